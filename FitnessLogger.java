@@ -1,7 +1,53 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
 import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.DateTimeException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
 
 /**
  * FitnessLogger: A console-based workout tracker for strength, cardio, and endurance exercises.
@@ -10,11 +56,49 @@ import java.util.*;
  */
 public class FitnessLogger {
 
+    // Display date format, compiled once and shared by all entries
+    static final DateTimeFormatter DISPLAY_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+    // Number of entries shown per View Log page
+    static final int PAGE_SIZE = 20;
+    // Records added per batch (and persisted with one write) in headless import mode
+    static final int IMPORT_BATCH_SIZE = 10_000;
+    // Rejected import records reported individually before only counting them
+    static final int MAX_REPORTED_REJECTS = 20;
+    // Rows added at once above which indexes are rebuilt by sort-and-merge instead of per-row inserts
+    static final int BULK_INDEX_ROWS = 256;
+    // Journal size at which its records are folded into log.txt
+    static final int JOURNAL_CHECKPOINT_RECORDS = 50_000, JOURNAL_CHECKPOINT_BYTES = 4 << 20;
+    // How long the log.txt a compaction replaced stays open, for lines other programs still append to it
+    static final long RETIRED_LOG_MILLIS = 1000;
+    // Add batches the background writer may have queued before further adds wait for it
+    static final int WRITE_QUEUE_CAPACITY = 1024;
+    // Share of log.txt lines (deleted records and their tombstones) at which it is compacted in the background
+    static final int COMPACTION_DEAD_PERCENT = 25;
+    // Run files merged at once by --merge; more runs take extra merge passes
+    static final int MERGE_FAN_IN = 64;
+    // Heap --merge fills with lines before spilling a sorted run, in MB unless fitness.merge.buffer says otherwise
+    static final int DEFAULT_MERGE_BUFFER_MB = 64;
+    // Lines of feedback (results, errors) the renderer carries onto the next screen
+    static final int FEEDBACK_LINES = 3;
+    // ASCII-art header with slogan, built once and printed on every screen
+    static final String BANNER = String.join("\n",
+            "███████╗██╗████████╗███╗░░██╗███████╗░██████╗░██████╗  ██╗░░░░░░█████╗░░██████╗░░██████╗░███████╗██████╗░",
+            "██╔════╝██║╚══██╔══╝████╗░██║██╔════╝██╔════╝██╔════╝  ██║░░░░░██╔══██╗██╔════╝░██╔════╝░██╔════╝██╔══██╗",
+            "█████╗░░██║░░░██║░░░██╔██╗██║█████╗░░╚█████╗░╚█████╗░  ██║░░░░░██║░░██║██║░░██╗░██║░░██╗░█████╗░░██████╔╝",
+            "██╔══╝░░██║░░░██║░░░██║╚████║██╔══╝░░░╚═══██╗░╚═══██╗  ██║░░░░░██║░░██║██║░░╚██╗██║░░╚██╗██╔══╝░░██╔══██╗",
+            "██║░░░░░██║░░░██║░░░██║░╚███║███████╗██████╔╝██████╔╝  ███████╗╚█████╔╝╚██████╔╝╚██████╔╝███████╗██║░░██║",
+            "╚═╝░░░░░╚═╝░░░╚═╝░░░╚═╝░░╚══╝╚══════╝╚═════╝░╚═════╝░  ╚══════╝░╚════╝░░╚═════╝░░╚═════╝░╚══════╝╚═╝░░╚═╝",
+            "",
+            centerText("🏋️ Track your progress like a beast! 🏋️", 100));
+    // Frame renderer behind System.out in the interactive UI; null when not on a terminal
+    static Screen screen;
+
     /**
      * Interface for log entries to ensure consistent CSV, string representation, and date access.
      */
     interface LogEntry {
         String toCSV();
+        String toJSON();
         String toString();
         LocalDate getDate();
     }
@@ -39,7 +123,7 @@ public class FitnessLogger {
 
         /** Formats date as dd/MM/yyyy. */
         String formattedDate() {
-            return date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            return DISPLAY_DATE.format(date);
         }
 
         /** Returns string representation for display (e.g., "18/05/2025 - Strength: Push-ups: 3 sets of 10 reps"). */
@@ -54,12 +138,18 @@ public class FitnessLogger {
             return "strength;" + name + ";" + sets + ";" + reps + ";" + date;
         }
 
+        /** Returns a JSON object for NDJSON export (e.g., {"type":"strength","name":"Push-ups","sets":3,"reps":10,"date":"2025-05-18"}). */
+        @Override
+        public String toJSON() {
+            return "{\"type\":\"strength\",\"name\":" + jsonString(name) + ",\"sets\":" + sets + ",\"reps\":" + reps + ",\"date\":\"" + date + "\"}";
+        }
+
         @Override
         public LocalDate getDate() { return date; }
 
-        /** Creates StrengthEntry from CSV parts. */
-        static StrengthEntry fromCSV(String[] parts) {
-            return new StrengthEntry(parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), LocalDate.parse(parts[4]));
+        /** Creates StrengthEntry from a parsed CSV record. */
+        static StrengthEntry fromCSV(CsvRecord record) {
+            return new StrengthEntry(record.name(), record.a, record.b, LocalDate.ofEpochDay(record.epochDay));
         }
     }
 
@@ -80,7 +170,7 @@ public class FitnessLogger {
 
         /** Formats date as dd/MM/yyyy. */
         String formattedDate() {
-            return date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            return DISPLAY_DATE.format(date);
         }
 
         /** Formats duration as hours, minutes, seconds (e.g., "1m0s"). */
@@ -103,12 +193,18 @@ public class FitnessLogger {
             return "cardio;" + name + ";" + duration + ";" + sets + ";" + date;
         }
 
+        /** Returns a JSON object for NDJSON export (e.g., {"type":"cardio","name":"Plank","duration":60,"sets":2,"date":"2025-05-18"}). */
+        @Override
+        public String toJSON() {
+            return "{\"type\":\"cardio\",\"name\":" + jsonString(name) + ",\"duration\":" + duration + ",\"sets\":" + sets + ",\"date\":\"" + date + "\"}";
+        }
+
         @Override
         public LocalDate getDate() { return date; }
 
-        /** Creates CardioEntry from CSV parts. */
-        static CardioEntry fromCSV(String[] parts) {
-            return new CardioEntry(parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), LocalDate.parse(parts[4]));
+        /** Creates CardioEntry from a parsed CSV record. */
+        static CardioEntry fromCSV(CsvRecord record) {
+            return new CardioEntry(record.name(), record.a, record.b, LocalDate.ofEpochDay(record.epochDay));
         }
     }
 
@@ -129,7 +225,7 @@ public class FitnessLogger {
 
         /** Formats date as dd/MM/yyyy. */
         String formattedDate() {
-            return date.format(DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            return DISPLAY_DATE.format(date);
         }
 
         /** Formats distance as km or m (e.g., "1.0km" or "100m"). */
@@ -157,350 +253,4557 @@ public class FitnessLogger {
             return "endurance;" + name + ";" + distance + ";" + duration + ";" + date;
         }
 
+        /** Returns a JSON object for NDJSON export (e.g., {"type":"endurance","name":"Swimming","distance":1000,"duration":1200,"date":"2025-05-18"}). */
+        @Override
+        public String toJSON() {
+            return "{\"type\":\"endurance\",\"name\":" + jsonString(name) + ",\"distance\":" + distance + ",\"duration\":" + duration + ",\"date\":\"" + date + "\"}";
+        }
+
         @Override
         public LocalDate getDate() { return date; }
 
-        /** Creates EnduranceEntry from CSV parts. */
-        static EnduranceEntry fromCSV(String[] parts) {
-            return new EnduranceEntry(parts[1], Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), LocalDate.parse(parts[4]));
+        /** Creates EnduranceEntry from a parsed CSV record. */
+        static EnduranceEntry fromCSV(CsvRecord record) {
+            return new EnduranceEntry(record.name(), record.a, record.b, LocalDate.ofEpochDay(record.epochDay));
         }
     }
 
-    // List to store all exercise entries
-    static List<LogEntry> log = new ArrayList<>();
-    // File to store logs
-    static final String LOG_FILE = "log.txt";
+    // Exercise type codes shared by the CSV kernel and the entry classes
+    static final int STRENGTH = 0, CARDIO = 1, ENDURANCE = 2;
+    // Type flag of a tombstone row: a "delete;" line of log.txt that cancels one identical record
+    static final int TOMBSTONE = 4;
+    static final String TOMBSTONE_PREFIX = "delete;";
 
     /**
-     * Loads exercise entries from log.txt into the log list.
+     * Allocation-free parsing kernel shared by the CSV loader and user input.
+     * Every method works on a char or byte range and returns a primitive; INVALID marks a failed parse.
      */
-    static void loadLog() {
-        File file = new File(LOG_FILE);
-        if (!file.exists()) return;
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                if (!line.trim().isEmpty()) {
-                    String[] parts = line.split(";");
-                    // Parse based on exercise type
-                    switch (parts[0]) {
-                        case "strength": log.add(StrengthEntry.fromCSV(parts)); break;
-                        case "cardio": log.add(CardioEntry.fromCSV(parts)); break;
-                        case "endurance": log.add(EnduranceEntry.fromCSV(parts)); break;
-                    }
-                }
+    static final class Parse {
+        static final long INVALID = Long.MIN_VALUE;
+        // Exact powers of ten as doubles, used for correctly rounded decimal conversion
+        private static final double[] POW10 = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+        private static final int[] MONTH_DAYS = {31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31};
+
+        private Parse() {}
+
+        /** Parses a signed decimal int like Integer.parseInt. */
+        static long parseInt(CharSequence s, int from, int to) {
+            if (from >= to) return INVALID;
+            boolean negative = s.charAt(from) == '-';
+            if (negative || s.charAt(from) == '+') from++;
+            if (from >= to) return INVALID;
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = Character.digit(s.charAt(i), 10);
+                if (digit < 0) return INVALID;
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE + 1L) return INVALID;
             }
-        } catch (IOException e) {
-            System.out.println("Error loading log: " + e.getMessage());
+            if (negative) value = -value;
+            return value > Integer.MAX_VALUE ? INVALID : value;
         }
-    }
 
-    /**
-     * Saves all log entries to log.txt.
-     */
-    static void saveLog() {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(LOG_FILE))) {
-            for (LogEntry e : log) {
-                writer.write(e.toCSV());
-                writer.newLine();
+        /** Parses a signed decimal int from ASCII bytes like Integer.parseInt. */
+        static long parseInt(ByteBuffer b, int from, int to) {
+            if (from >= to) return INVALID;
+            boolean negative = b.get(from) == '-';
+            if (negative || b.get(from) == '+') from++;
+            if (from >= to) return INVALID;
+            long value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = b.get(i) - '0';
+                if (digit < 0 || digit > 9) return INVALID;
+                value = value * 10 + digit;
+                if (value > Integer.MAX_VALUE + 1L) return INVALID;
             }
-        } catch (IOException e) {
-            System.out.println("Error saving log: " + e.getMessage());
+            if (negative) value = -value;
+            return value > Integer.MAX_VALUE ? INVALID : value;
         }
-    }
-
-    /**
-     * Clears the console screen for a clean UI.
-     */
-    static void clearScreen() {
-        System.out.print("\033[H\033[2J");
-        System.out.flush();
-    }
-
-    /**
-     * Centers text within a given width for neat display.
-     * @param text Text to center
-     * @param width Desired width
-     * @return Centered text with padding
-     */
-    static String centerText(String text, int width) {
-        return " ".repeat(Math.max(0, (width - text.length()) / 2)) + text;
-    }
 
-    /**
-     * Prints ASCII-art header with slogan.
-     */
-    static void printAsciiArt() {
-        String[] art = {
-                "███████╗██╗████████╗███╗░░██╗███████╗░██████╗░██████╗  ██╗░░░░░░█████╗░░██████╗░░██████╗░███████╗██████╗░",
-                "██╔════╝██║╚══██╔══╝████╗░██║██╔════╝██╔════╝██╔════╝  ██║░░░░░██╔══██╗██╔════╝░██╔════╝░██╔════╝██╔══██╗",
-                "█████╗░░██║░░░██║░░░██╔██╗██║█████╗░░╚█████╗░╚█████╗░  ██║░░░░░██║░░██║██║░░██╗░██║░░██╗░█████╗░░██████╔╝",
-                "██╔══╝░░██║░░░██║░░░██║╚████║██╔══╝░░░╚═══██╗░╚═══██╗  ██║░░░░░██║░░██║██║░░╚██╗██║░░╚██╗██╔══╝░░██╔══██╗",
-                "██║░░░░░██║░░░██║░░░██║░╚███║███████╗██████╔╝██████╔╝  ███████╗╚█████╔╝╚██████╔╝╚██████╔╝███████╗██║░░██║",
-                "╚═╝░░░░░╚═╝░░░╚═╝░░░╚═╝░░╚══╝╚══════╝╚═════╝░╚═════╝░  ╚══════╝░╚════╝░░╚═════╝░░╚═════╝░╚══════╝╚═╝░░╚═╝",
-                "",
-                centerText("🏋️ Track your progress like a beast! 🏋️", 100)
-        };
-        for (String line : art) System.out.println(line);
-    }
+        /** Parses an ISO date (yyyy-MM-dd, as written by LocalDate.toString) straight to epoch-day. */
+        static long isoEpochDay(ByteBuffer b, int from, int to) {
+            if (to - from != 10 || b.get(from + 4) != '-' || b.get(from + 7) != '-') return INVALID;
+            int year = digits(b, from, from + 4), month = digits(b, from + 5, from + 7), day = digits(b, from + 8, from + 10);
+            if (year < 0 || month < 1 || month > 12 || day < 1 || day > monthLength(year, month)) return INVALID;
+            return epochDay(year, month, day);
+        }
 
-    /**
-     * Displays a window with ASCII-art and title.
-     * @param title Window title
-     */
-    static void displayWindow(String title) {
-        clearScreen();
-        printAsciiArt();
-        System.out.println("\n" + centerText(title, 100) + "\n");
-    }
+        /**
+         * Parses a dd/MM/yyyy date straight to epoch-day.
+         * Like DateTimeFormatter's default smart resolver, a day past the end of the month is clamped (31/04 -> 30/04).
+         */
+        static long dmyEpochDay(CharSequence s, int from, int to) {
+            if (to - from != 10 || s.charAt(from + 2) != '/' || s.charAt(from + 5) != '/') return INVALID;
+            int day = digits(s, from, from + 2), month = digits(s, from + 3, from + 5), year = digits(s, from + 6, from + 10);
+            if (year < 1 || month < 1 || month > 12 || day < 1 || day > 31) return INVALID;
+            return epochDay(year, month, Math.min(day, monthLength(year, month)));
+        }
 
-    /**
-     * Displays the main menu with options.
-     */
-    static void displayMainMenu() {
-        try {
-            Thread.sleep(2000); // 2-second delay for smooth UX
-        } catch (InterruptedException e) {
-            System.out.println("Error during delay: " + e.getMessage());
+        /**
+         * Parses a duration like "2h30m15s" (units may repeat and appear in any order) into seconds.
+         * Surrounding whitespace is ignored and units are case-insensitive.
+         */
+        static long duration(CharSequence s, int from, int to) {
+            while (from < to && s.charAt(from) <= ' ') from++;
+            while (to > from && s.charAt(to - 1) <= ' ') to--;
+            if (from >= to) return INVALID;
+            int seconds = 0;
+            long number = -1; // -1 while no digits have been read for the current unit
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                int digit = Character.digit(c, 10);
+                if (digit >= 0) {
+                    number = (number < 0 ? 0 : number * 10) + digit;
+                    if (number > Integer.MAX_VALUE) return INVALID;
+                    continue;
+                }
+                int unit;
+                switch (c) {
+                    case 'h': case 'H': unit = 3600; break;
+                    case 'm': case 'M': unit = 60; break;
+                    case 's': case 'S': unit = 1; break;
+                    default: return INVALID;
+                }
+                if (number < 0) return INVALID;
+                seconds += (int) number * unit;
+                number = -1;
+            }
+            if (number >= 0) return INVALID;
+            return seconds > 0 ? seconds : INVALID;
         }
-        clearScreen();
-        printAsciiArt();
-        System.out.println("\n" + centerText("1. Add exercise", 100));
-        System.out.println(centerText("2. View log", 100));
-        System.out.println(centerText("3. Show progress", 100));
-        System.out.println(centerText("Type 'exit' to quit", 100));
-        System.out.print("\n" + centerText("Select an option: ", 100));
-    }
 
-    /**
-     * Gets user input, handles 'back' command.
-     * @param prompt Prompt to display
-     * @param scanner Scanner for input
-     * @return Input string, or null if 'back'
-     */
-    static String getInput(String prompt, Scanner scanner) {
-        System.out.print(prompt);
-        String input = scanner.nextLine().trim().toLowerCase();
-        if (input.equals("back")) return null;
-        return input;
-    }
+        /**
+         * Parses a distance like "2km", "1.5km", "100m" or "250" into meters.
+         * Kilometers are converted exactly as (int) (Double.parseDouble(value) * 1000).
+         */
+        static long distance(CharSequence s, int from, int to) {
+            while (from < to && s.charAt(from) <= ' ') from++;
+            while (to > from && s.charAt(to - 1) <= ' ') to--;
+            if (to - from >= 2 && (s.charAt(to - 1) | 0x20) == 'm' && (s.charAt(to - 2) | 0x20) == 'k') {
+                to -= 2;
+                while (from < to && s.charAt(from) <= ' ') from++;
+                while (to > from && s.charAt(to - 1) <= ' ') to--;
+                double km = decimal(s, from, to);
+                return Double.isNaN(km) ? INVALID : (int) (km * 1000);
+            }
+            if (to > from && (s.charAt(to - 1) | 0x20) == 'm') to--;
+            return parseInt(s, from, to);
+        }
 
-    /**
-     * Parses duration input (e.g., "2h56m45s") into seconds.
-     * @param input Duration string
-     * @return Seconds, or null if invalid
-     */
-    static Integer parseDuration(String input) {
-        input = input.trim().toLowerCase();
-        if (input.isEmpty()) return null;
-        try {
-            int seconds = 0;
-            String currentNum = "";
-            for (int i = 0; i < input.length(); i++) {
-                char c = input.charAt(i);
-                if (Character.isDigit(c)) {
-                    currentNum += c;
-                } else if (c == 'h' || c == 'm' || c == 's') {
-                    if (currentNum.isEmpty()) return null;
-                    int num = Integer.parseInt(currentNum);
-                    if (c == 'h') seconds += num * 3600;
-                    else if (c == 'm') seconds += num * 60;
-                    else if (c == 's') seconds += num;
-                    currentNum = "";
+        /** Parses [+-]digits[.digits] to the same double Double.parseDouble would produce, or NaN. */
+        static double decimal(CharSequence s, int from, int to) {
+            if (from >= to) return Double.NaN;
+            boolean negative = s.charAt(from) == '-';
+            if (negative || s.charAt(from) == '+') from++;
+            long mantissa = 0;
+            int digits = 0, scale = -1; // scale counts digits after the point, -1 until a point is seen
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (c == '.' && scale < 0) {
+                    scale = 0;
+                } else if (c >= '0' && c <= '9') {
+                    if (mantissa >= 1L << 53 || scale >= POW10.length - 1) {
+                        // Beyond exact double arithmetic; defer to the JDK for correct rounding
+                        try {
+                            double value = Double.parseDouble(s.subSequence(from, to).toString());
+                            return negative ? -value : value;
+                        } catch (NumberFormatException e) {
+                            return Double.NaN;
+                        }
+                    }
+                    mantissa = mantissa * 10 + (c - '0');
+                    digits++;
+                    if (scale >= 0) scale++;
                 } else {
-                    return null;
+                    return Double.NaN;
                 }
             }
-            if (!currentNum.isEmpty()) return null;
-            return seconds > 0 ? seconds : null;
-        } catch (NumberFormatException e) {
-            return null;
+            if (digits == 0) return Double.NaN;
+            // Both operands are exact, so a single division is correctly rounded
+            double value = scale > 0 ? mantissa / POW10[scale] : mantissa;
+            return negative ? -value : value;
         }
-    }
 
-    /**
-     * Parses distance input (e.g., "2km", "100m") into meters.
-     * @param input Distance string
-     * @return Meters, or null if invalid
-     */
-    static Integer parseDistance(String input) {
-        input = input.trim().toLowerCase();
-        try {
-            if (input.endsWith("km")) return (int) (Double.parseDouble(input.replace("km", "")) * 1000);
-            if (input.endsWith("m")) return Integer.parseInt(input.replace("m", ""));
-            return Integer.parseInt(input);
-        } catch (Exception e) {
-            return null;
+        /** Converts a proleptic ISO date to days since 1970-01-01 (same result as LocalDate.toEpochDay). */
+        static long epochDay(long year, int month, int day) {
+            long total = 365 * year;
+            if (year >= 0) total += (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400;
+            else total -= year / -4 - year / -100 + year / -400;
+            total += (367 * month - 362) / 12 + day - 1;
+            if (month > 2) total -= isLeap(year) ? 1 : 2;
+            return total - 719528; // Days from 0000-01-01 to 1970-01-01
         }
-    }
 
-    /**
-     * Parses date input (e.g., "18/05/2025") or returns today if empty.
-     * @param input Date string
-     * @return LocalDate, or null if invalid
-     */
-    static LocalDate parseDate(String input) {
-        if (input.trim().isEmpty()) return LocalDate.now();
-        try {
-            return LocalDate.parse(input, DateTimeFormatter.ofPattern("dd/MM/yyyy"));
-        } catch (Exception e) {
-            return null;
+        static boolean isLeap(long year) {
+            return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
         }
-    }
-
-    /**
-     * Adds a strength exercise (e.g., Push-ups).
-     * @param scanner Scanner for input
-     * @return "exit" to quit, null to return, or null on success
-     */
-    static String addStrengthExercise(Scanner scanner) {
-        displayWindow("Add Strength Exercise");
-        String name = getInput(centerText("Enter exercise name: ", 100), scanner);
-        if (name == null) return null;
-        if (name.equals("exit")) return "exit";
 
-        String setsInput = getInput(centerText("Enter number of sets: ", 100), scanner);
-        if (setsInput == null) return null;
-        if (setsInput.equals("exit")) return "exit";
-        int sets;
-        try {
-            sets = Integer.parseInt(setsInput);
-        } catch (NumberFormatException e) {
-            System.out.println(centerText("Invalid sets! Returning...", 100));
-            return null;
+        /** Epoch-month (year * 12 + month - 1) of an epoch-day, without building a LocalDate. */
+        static int epochMonth(long day) {
+            // Days-to-civil conversion over 400-year eras, with years starting in March
+            long z = day + 719_468, era = Math.floorDiv(z, 146_097), dayOfEra = z - era * 146_097;
+            long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36_524 - dayOfEra / 146_096) / 365;
+            long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+            long shifted = (5 * dayOfYear + 2) / 153, month = shifted < 10 ? shifted + 3 : shifted - 9;
+            return (int) ((yearOfEra + era * 400 + (month <= 2 ? 1 : 0)) * 12 + month - 1);
         }
 
-        String repsInput = getInput(centerText("Enter reps per set: ", 100), scanner);
-        if (repsInput == null) return null;
-        if (repsInput.equals("exit")) return "exit";
-        int reps;
-        try {
-            reps = Integer.parseInt(repsInput);
-        } catch (NumberFormatException e) {
-            System.out.println(centerText("Invalid reps! Returning...", 100));
-            return null;
+        static int monthLength(long year, int month) {
+            return month == 2 && isLeap(year) ? 29 : MONTH_DAYS[month - 1];
         }
 
-        String dateInput = getInput(centerText("Enter date (dd/MM/yyyy, empty for today): ", 100), scanner);
-        if (dateInput == null) return null;
-        if (dateInput.equals("exit")) return "exit";
-        LocalDate date = parseDate(dateInput);
-        if (date == null) {
-            System.out.println(centerText("Invalid date! Returning...", 100));
-            return null;
+        /** Reads an unsigned run of ASCII digits, or -1 if any character is not a digit. */
+        private static int digits(CharSequence s, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                char c = s.charAt(i);
+                if (c < '0' || c > '9') return -1;
+                value = value * 10 + (c - '0');
+            }
+            return value;
         }
 
-        log.add(new StrengthEntry(name, sets, reps, date));
-        saveLog();
-        System.out.println(centerText("✅ Exercise added!", 100));
-        return null;
+        private static int digits(ByteBuffer b, int from, int to) {
+            int value = 0;
+            for (int i = from; i < to; i++) {
+                int digit = b.get(i) - '0';
+                if (digit < 0 || digit > 9) return -1;
+                value = value * 10 + digit;
+            }
+            return value;
+        }
     }
 
     /**
-     * Adds a cardio exercise (e.g., Plank).
-     * @param scanner Scanner for input
-     * @return "exit" to quit, null to return, or null on success
+     * Reusable cursor over one CSV record ("type;name;a;b;yyyy-MM-dd") held in a byte buffer.
+     * The two metric fields keep their CSV order: sets/reps, duration/sets or distance/duration.
+     * A record prefixed with "delete;" is a tombstone for the record that follows the prefix.
      */
-    static String addCardioExercise(Scanner scanner) {
-        displayWindow("Add Cardio Exercise");
-        String name = getInput(centerText("Enter exercise name: ", 100), scanner);
-        if (name == null) return null;
-        if (name.equals("exit")) return "exit";
+    static final class CsvRecord {
+        private static final byte[] STRENGTH_TAG = "strength".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] CARDIO_TAG = "cardio".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] ENDURANCE_TAG = "endurance".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] TOMBSTONE_TAG = TOMBSTONE_PREFIX.getBytes(StandardCharsets.UTF_8);
 
-        String durationInput = getInput(centerText("Enter duration (e.g., 2h56m45s, 15m24s, 15m, 2h, 2h30m, 48s): ", 100), scanner);
-        if (durationInput == null) return null;
-        if (durationInput.equals("exit")) return "exit";
-        Integer duration = parseDuration(durationInput);
-        if (duration == null) {
-            System.out.println(centerText("Invalid duration! Use formats like 15m, 2h, 2h30m, 48s.", 100));
-            return null;
+        ByteBuffer source;
+        int type, nameFrom, nameTo, a, b;
+        long epochDay;
+        boolean tombstone; // The record was prefixed with "delete;"
+        String error; // Reason for the last failed parse
+        private final int[] bounds = new int[6];
+        private byte[] scratch = new byte[64];
+
+        /**
+         * Parses the record in source[from, to). Returns false and sets error if it is malformed.
+         */
+        boolean parse(ByteBuffer source, int from, int to) {
+            this.source = source;
+            tombstone = to - from > TOMBSTONE_TAG.length && matches(source, from, from + TOMBSTONE_TAG.length, TOMBSTONE_TAG);
+            if (tombstone) from += TOMBSTONE_TAG.length;
+            bounds[0] = from;
+            // Field i spans [bounds[i], end of field); separators sit at bounds[i + 1] - 1
+            int field = 1;
+            for (int i = from; i < to && field < 6; i++) {
+                if (source.get(i) == ';') bounds[field++] = i + 1;
+            }
+            if (field < 5) return fail("expected 5 fields but found " + field);
+            int end = to;
+            if (field == 6) {
+                // split(";") tolerated trailing empty fields; anything else after the date is an error
+                for (int i = bounds[5] - 1; i < to; i++) if (source.get(i) != ';') return fail("expected 5 fields but found more");
+                end = bounds[5] - 1;
+            }
+            int typeEnd = bounds[1] - 1;
+            if (matches(source, from, typeEnd, STRENGTH_TAG)) type = STRENGTH;
+            else if (matches(source, from, typeEnd, CARDIO_TAG)) type = CARDIO;
+            else if (matches(source, from, typeEnd, ENDURANCE_TAG)) type = ENDURANCE;
+            else return fail("unknown exercise type");
+            nameFrom = bounds[1];
+            nameTo = bounds[2] - 1;
+            long first = Parse.parseInt(source, bounds[2], bounds[3] - 1);
+            long second = Parse.parseInt(source, bounds[3], bounds[4] - 1);
+            epochDay = Parse.isoEpochDay(source, bounds[4], end);
+            if (first == Parse.INVALID) return fail("invalid number in field 3");
+            if (second == Parse.INVALID) return fail("invalid number in field 4");
+            if (epochDay == Parse.INVALID) return fail("invalid date in field 5");
+            a = (int) first;
+            b = (int) second;
+            error = null;
+            return true;
         }
 
-        String setsInput = getInput(centerText("Enter number of sets: ", 100), scanner);
-        if (setsInput == null) return null;
-        if (setsInput.equals("exit")) return "exit";
-        int sets;
-        try {
-            sets = Integer.parseInt(setsInput);
-        } catch (NumberFormatException e) {
-            System.out.println(centerText("Invalid sets! Returning...", 100));
-            return null;
+        /** Decodes the name field of the last parsed record. */
+        String name() {
+            int length = nameTo - nameFrom;
+            if (length > scratch.length) scratch = new byte[Math.max(length, scratch.length * 2)];
+            source.get(nameFrom, scratch, 0, length);
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
         }
 
-        String dateInput = getInput(centerText("Enter date (dd/MM/yyyy, empty for today): ", 100), scanner);
-        if (dateInput == null) return null;
-        if (dateInput.equals("exit")) return "exit";
-        LocalDate date = parseDate(dateInput);
-        if (date == null) {
-            System.out.println(centerText("Invalid date! Returning...", 100));
-            return null;
+        /** Builds the entry described by the last parsed record. */
+        LogEntry toEntry() {
+            switch (type) {
+                case STRENGTH: return StrengthEntry.fromCSV(this);
+                case CARDIO: return CardioEntry.fromCSV(this);
+                default: return EnduranceEntry.fromCSV(this);
+            }
         }
 
-        log.add(new CardioEntry(name, duration, sets, date));
-        saveLog();
-        System.out.println(centerText("✅ Exercise added!", 100));
-        return null;
+        private boolean fail(String reason) {
+            error = reason;
+            return false;
+        }
+
+        private static boolean matches(ByteBuffer b, int from, int to, byte[] tag) {
+            if (to - from != tag.length) return false;
+            for (int i = 0; i < tag.length; i++) if (b.get(from + i) != tag[i]) return false;
+            return true;
+        }
     }
 
     /**
-     * Adds an endurance exercise (e.g., Running, Swimming).
-     * @param scanner Scanner for input
-     * @return "exit" to quit, null to return, or null on success
+     * Exercise-name symbol table. Every distinct spelling gets a dense id, and every case-folded name
+     * (the exercise itself) gets a dense exercise id, so grouping, filtering and stats key on ints.
+     * Lookups work on UTF-8 byte ranges, so the loader only decodes names it has not seen before.
+     * A dictionary may have a read-only parent that is consulted first; loader chunks use this to
+     * resolve known names against the main dictionary while parsing in parallel.
      */
-    static String addEnduranceExercise(Scanner scanner) {
-        displayWindow("Add Endurance Exercise");
-        String name = getInput(centerText("Enter exercise name (e.g., Running, Swimming): ", 100), scanner);
-        if (name == null) return null;
-        if (name.equals("exit")) return "exit";
+    static final class NameDictionary {
+        private final NameDictionary parent;
+        private final int base; // Ids below base belong to the parent
+        private String[] spellings = new String[16];
+        private byte[][] encoded = new byte[16][];
+        private int[] exerciseOf = new int[16];
+        private int size;
+        private int[] slots = new int[32]; // Open-addressing table of local index + 1; 0 marks an empty slot
+        private final List<String> exercises = new ArrayList<>();
+        private final Map<String, Integer> exerciseIds = new HashMap<>();
 
-        String distanceInput = getInput(centerText("Enter distance (e.g., 100m, 2km): ", 100), scanner);
-        if (distanceInput == null) return null;
-        if (distanceInput.equals("exit")) return "exit";
-        Integer distance = parseDistance(distanceInput);
-        if (distance == null) {
-            System.out.println(centerText("Invalid distance! Returning...", 100));
-            return null;
+        NameDictionary() {
+            this(null);
         }
 
-        String durationInput = getInput(centerText("Enter duration (e.g., 2h56m45s, 15m24s, 15m, 2h, 2h30m, 48s): ", 100), scanner);
-        if (durationInput == null) return null;
-        if (durationInput.equals("exit")) return "exit";
-        Integer duration = parseDuration(durationInput);
-        if (duration == null) {
-            System.out.println(centerText("Invalid duration! Use formats like 15m, 2h, 2h30m, 48s.", 100));
-            return null;
+        NameDictionary(NameDictionary parent) {
+            this.parent = parent;
+            this.base = parent == null ? 0 : parent.size();
         }
 
-        String dateInput = getInput(centerText("Enter date (dd/MM/yyyy, empty for today): ", 100), scanner);
-        if (dateInput == null) return null;
-        if (dateInput.equals("exit")) return "exit";
-        LocalDate date = parseDate(dateInput);
-        if (date == null) {
-            System.out.println(centerText("Invalid date! Returning...", 100));
-            return null;
+        /** Number of ids in use, including the parent's. */
+        int size() { return base + size; }
+
+        int exerciseCount() { return exercises.size(); }
+
+        /** Returns the name as it was first spelled. */
+        String spelling(int id) {
+            return id < base ? parent.spelling(id) : spellings[id - base];
         }
 
-        log.add(new EnduranceEntry(name, distance, duration, date));
-        saveLog();
-        System.out.println(centerText("✅ Exercise added!", 100));
-        return null;
-    }
+        /** Returns the exercise (case-folded name) id of a spelling. */
+        int exerciseId(int id) {
+            return id < base ? parent.exerciseId(id) : exerciseOf[id - base];
+        }
 
-    /**
-     * Guides user to add an exercise by selecting type.
-     * @param scanner Scanner for input
-     * @return "exit" to quit, null to return
-     */
-    static String addExercise(Scanner scanner) {
-        while (true) {
-            displayWindow("Add Exercise");
-            System.out.println(centerText("1. Strength (e.g., Push-ups)", 100));
-            System.out.println(centerText("2. Cardio (e.g., Plank)", 100));
-            System.out.println(centerText("3. Endurance (e.g., Running, Swimming)", 100));
-            System.out.println(centerText("Type 'back' to return or 'exit' to quit", 100));
-            System.out.print("\n" + centerText("Select type: ", 100));
+        /** Returns the case-folded name of an exercise id. */
+        String exerciseName(int exerciseId) { return exercises.get(exerciseId); }
 
-            String choice = getInput("", scanner);
+        /** Returns the exercise id of a name in any case, or -1 if it has never been logged. */
+        int findExercise(String name) {
+            Integer id = exerciseIds.get(name.toLowerCase(Locale.ROOT));
+            return id == null ? -1 : id;
+        }
+
+        /** Returns the id for a name, assigning the next free id on first use. */
+        int intern(String name) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            return intern(ByteBuffer.wrap(bytes), 0, bytes.length);
+        }
+
+        /** Returns the id for the UTF-8 name in b[from, to), assigning the next free id on first use. */
+        int intern(ByteBuffer b, int from, int to) {
+            int hash = hash(b, from, to);
+            if (parent != null) {
+                int id = parent.find(b, from, to, hash);
+                if (id >= 0) return id;
+            }
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot];
+                if (entry == 0) break;
+                if (equal(encoded[entry - 1], b, from, to)) return base + entry - 1;
+            }
+            byte[] bytes = new byte[to - from];
+            b.get(from, bytes);
+            return add(new String(bytes, StandardCharsets.UTF_8), bytes, hash);
+        }
+
+        /** Drops all names. */
+        void clear() {
+            size = 0;
+            Arrays.fill(slots, 0);
+            Arrays.fill(spellings, null);
+            Arrays.fill(encoded, null);
+            exercises.clear();
+            exerciseIds.clear();
+        }
+
+        private int find(ByteBuffer b, int from, int to, int hash) {
+            if (parent != null) {
+                int id = parent.find(b, from, to, hash);
+                if (id >= 0) return id;
+            }
+            int mask = slots.length - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int entry = slots[slot];
+                if (entry == 0) return -1;
+                if (equal(encoded[entry - 1], b, from, to)) return base + entry - 1;
+            }
+        }
+
+        private int add(String spelling, byte[] bytes, int hash) {
+            if (size == spellings.length) {
+                spellings = Arrays.copyOf(spellings, size * 2);
+                encoded = Arrays.copyOf(encoded, size * 2);
+                exerciseOf = Arrays.copyOf(exerciseOf, size * 2);
+            }
+            spellings[size] = spelling;
+            encoded[size] = bytes;
+            exerciseOf[size] = exerciseIds.computeIfAbsent(spelling.toLowerCase(Locale.ROOT), folded -> {
+                exercises.add(folded);
+                return exercises.size() - 1;
+            });
+            size++;
+            if (size * 2 > slots.length) rehash();
+            else insert(hash, size);
+            return base + size - 1;
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            for (int i = 0; i < size; i++) {
+                byte[] bytes = encoded[i];
+                insert(hash(ByteBuffer.wrap(bytes), 0, bytes.length), i + 1);
+            }
+        }
+
+        private void insert(int hash, int entry) {
+            int mask = slots.length - 1, slot = hash & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = entry;
+        }
+
+        private static int hash(ByteBuffer b, int from, int to) {
+            int hash = 0x811C9DC5; // FNV-1a
+            for (int i = from; i < to; i++) hash = (hash ^ (b.get(i) & 0xFF)) * 0x01000193;
+            return hash ^ (hash >>> 16);
+        }
+
+        private static boolean equal(byte[] bytes, ByteBuffer b, int from, int to) {
+            if (bytes.length != to - from) return false;
+            for (int i = 0; i < bytes.length; i++) if (bytes[i] != b.get(from + i)) return false;
+            return true;
+        }
+    }
+
+    /**
+     * Incrementally maintained progress summaries. For every type and exercise it keeps the entry count,
+     * the oldest and latest row by date (ties resolved the way a stable sort by date would) and the metric
+     * each is compared on: total reps (strength), sets × duration (cardio) or speed in m/min (endurance).
+     * Every add updates it in O(1), so the progress screen costs O(number of distinct exercises).
+     */
+    static final class ProgressIndex {
+        private int[][] counts = new int[3][16], oldestRows = new int[3][16], latestRows = new int[3][16];
+        private double[][] oldestMetrics = new double[3][16], latestMetrics = new double[3][16];
+
+        /** Folds a newly added row into its exercise's summary. */
+        void add(LogStore store, int row) {
+            int type = store.type(row), exercise = store.exerciseId(row);
+            if (exercise >= counts[type].length) grow(exercise + 1);
+            if (counts[type][exercise]++ == 0) {
+                oldestRows[type][exercise] = latestRows[type][exercise] = row;
+                oldestMetrics[type][exercise] = latestMetrics[type][exercise] = metric(store, row);
+                return;
+            }
+            int day = store.day(row);
+            if (day < store.day(oldestRows[type][exercise])) {
+                oldestRows[type][exercise] = row;
+                oldestMetrics[type][exercise] = metric(store, row);
+            }
+            if (day >= store.day(latestRows[type][exercise])) {
+                latestRows[type][exercise] = row;
+                latestMetrics[type][exercise] = metric(store, row);
+            }
+        }
+
+        /**
+         * Takes a deleted row out of its exercise's summary. If it was the oldest or latest row, the replacement is the
+         * first or last row of the same type in the exercise's index, which the row has already left.
+         */
+        void remove(LogStore store, int row, RowIndex exerciseRows) {
+            int type = store.type(row), exercise = store.exerciseId(row);
+            if (--counts[type][exercise] == 0) return;
+            if (oldestRows[type][exercise] == row) {
+                int position = 0;
+                while (store.type(exerciseRows.row(position)) != type) position++;
+                oldestRows[type][exercise] = exerciseRows.row(position);
+                oldestMetrics[type][exercise] = metric(store, exerciseRows.row(position));
+            }
+            if (latestRows[type][exercise] == row) {
+                int position = exerciseRows.size() - 1;
+                while (store.type(exerciseRows.row(position)) != type) position--;
+                latestRows[type][exercise] = exerciseRows.row(position);
+                latestMetrics[type][exercise] = metric(store, exerciseRows.row(position));
+            }
+        }
+
+        /** Forgets all summaries (used when the log is cleared). */
+        void clear() {
+            for (int[] c : counts) Arrays.fill(c, 0);
+        }
+
+        int count(int type, int exercise) { return exercise < counts[type].length ? counts[type][exercise] : 0; }
+
+        int oldestRow(int type, int exercise) { return oldestRows[type][exercise]; }
+
+        int latestRow(int type, int exercise) { return latestRows[type][exercise]; }
+
+        double oldestMetric(int type, int exercise) { return oldestMetrics[type][exercise]; }
+
+        double latestMetric(int type, int exercise) { return latestMetrics[type][exercise]; }
+
+        /** The value progress is measured on; strength and cardio values are exact ints. */
+        static double metric(LogStore store, int row) {
+            switch (store.type(row)) {
+                case STRENGTH: return store.sets(row) * store.reps(row);
+                case CARDIO: return store.duration(row) * store.sets(row);
+                default: return (double) store.distance(row) / (store.duration(row) / 60.0); // m/min
+            }
+        }
+
+        private void grow(int minimum) {
+            int capacity = Math.max(minimum, counts[0].length * 2);
+            for (int type = 0; type < 3; type++) {
+                counts[type] = Arrays.copyOf(counts[type], capacity);
+                oldestRows[type] = Arrays.copyOf(oldestRows[type], capacity);
+                latestRows[type] = Arrays.copyOf(latestRows[type], capacity);
+                oldestMetrics[type] = Arrays.copyOf(oldestMetrics[type], capacity);
+                latestMetrics[type] = Arrays.copyOf(latestMetrics[type], capacity);
+            }
+        }
+    }
+
+    /**
+     * Secondary index over store rows, kept sorted by (date, row). Rows logged in date order append in O(1);
+     * back-dated rows are inserted with a binary search and one array shift.
+     * Range lookups are O(log n) plus the size of the result.
+     */
+    static final class RowIndex {
+        private int[] rows = new int[16];
+        private int size;
+
+        int size() { return size; }
+
+        /** Row at a position in date order. */
+        int row(int position) { return rows[position]; }
+
+        /** Indexes a row; rows must be added in increasing row order. */
+        void add(LogStore store, int row) {
+            if (size == rows.length) rows = Arrays.copyOf(rows, size * 2);
+            int day = store.day(row);
+            if (size == 0 || store.day(rows[size - 1]) <= day) {
+                rows[size++] = row;
+                return;
+            }
+            // Among equal dates the newer row goes last, preserving insertion order
+            int at = upperBound(store, day);
+            System.arraycopy(rows, at, rows, at + 1, size - at);
+            rows[at] = row;
+            size++;
+        }
+
+        /** Unindexes a row: a binary search for its date, then one array shift. */
+        void remove(LogStore store, int row) {
+            int at = lowerBound(store, store.day(row));
+            while (rows[at] != row) at++;
+            System.arraycopy(rows, at + 1, rows, at, size - at - 1);
+            size--;
+        }
+
+        void clear() { size = 0; }
+
+        /**
+         * Merges rows sorted by (date, row), all newer than the indexed ones, in one linear pass.
+         * @param sorted Array holding the rows to merge
+         * @param from First position in sorted
+         * @param to Position after the last one in sorted
+         */
+        void merge(LogStore store, int[] sorted, int from, int to) {
+            int added = to - from;
+            int[] merged = new int[Math.max(16, size + added)];
+            int i = 0, j = from, k = 0;
+            while (i < size && j < to) {
+                // Existing rows have lower row numbers, so they go first among equal dates
+                merged[k++] = store.day(rows[i]) <= store.day(sorted[j]) ? rows[i++] : sorted[j++];
+            }
+            while (i < size) merged[k++] = rows[i++];
+            while (j < to) merged[k++] = sorted[j++];
+            rows = merged;
+            size = k;
+        }
+
+        /** First position whose date is on or after day. */
+        int lowerBound(LogStore store, int day) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (store.day(rows[mid]) < day) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        /** First position whose date is after day. */
+        int upperBound(LogStore store, int day) {
+            int low = 0, high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (store.day(rows[mid]) <= day) low = mid + 1;
+                else high = mid;
+            }
+            return low;
+        }
+
+        /** Rows dated fromDay..toDay (inclusive), in date order. */
+        int[] between(LogStore store, int fromDay, int toDay) {
+            int from = lowerBound(store, fromDay), to = Math.max(from, upperBound(store, toDay));
+            return Arrays.copyOfRange(rows, from, to);
+        }
+
+        /** The last n rows in date order. */
+        int[] last(int n) {
+            return Arrays.copyOfRange(rows, Math.max(0, size - n), size);
+        }
+    }
+
+    /**
+     * Exact duplicate index: an open-addressing hash set of rows keyed by their fingerprint
+     * (type, exercise, both metrics, date), one int per slot, so finding an identical row is O(1).
+     */
+    static final class Fingerprints {
+        private int[] slots = new int[16]; // Row + 1; 0 marks an empty slot
+        private int size;
+
+        void add(LogStore store, int row) {
+            if (++size * 4 > slots.length * 3) rehash(store);
+            insert(slots, hashOf(store, row), row);
+        }
+
+        /** Drops a row, shifting later rows of its probe run back so lookups never stop at the hole. */
+        void remove(LogStore store, int row) {
+            int mask = slots.length - 1, hole = (int) hashOf(store, row) & mask;
+            while (slots[hole] != row + 1) hole = (hole + 1) & mask;
+            for (int i = (hole + 1) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                int home = (int) hashOf(store, slots[i] - 1) & mask;
+                // Move the entry back unless its home lies cyclically within (hole, i]
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    slots[hole] = slots[i];
+                    hole = i;
+                }
+            }
+            slots[hole] = 0;
+            size--;
+        }
+
+        /**
+         * Returns a row identical to the given fields, or -1.
+         * @param exercise Exercise id in the store's dictionary
+         */
+        int find(LogStore store, int type, int exercise, int first, int second, int day) {
+            int mask = slots.length - 1;
+            for (int i = (int) hash(type, exercise, first, second, day) & mask; slots[i] != 0; i = (i + 1) & mask) {
+                int row = slots[i] - 1;
+                if (store.day(row) == day && store.first(row) == first && store.second(row) == second
+                        && store.type(row) == type && store.exerciseId(row) == exercise) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+
+        void clear() {
+            slots = new int[16];
+            size = 0;
+        }
+
+        private void rehash(LogStore store) {
+            int[] grown = new int[slots.length * 2];
+            for (int slot : slots) {
+                if (slot != 0) insert(grown, hashOf(store, slot - 1), slot - 1);
+            }
+            slots = grown;
+        }
+
+        private static long hashOf(LogStore store, int row) {
+            return hash(store.type(row), store.exerciseId(row), store.first(row), store.second(row), store.day(row));
+        }
+
+        private static void insert(int[] slots, long hash, int row) {
+            int mask = slots.length - 1, i = (int) hash & mask;
+            while (slots[i] != 0) i = (i + 1) & mask;
+            slots[i] = row + 1;
+        }
+
+        /** Mixes the fields of a fingerprint into 64 well-spread bits (exercise is whatever id or hash the caller keys on). */
+        static long hash(int type, int exercise, int first, int second, int day) {
+            long h = mix((long) exercise << 2 | type);
+            h = mix(h ^ ((long) first << 32 | (second & 0xFFFFFFFFL)));
+            return mix(h ^ day);
+        }
+
+        private static long mix(long h) {
+            h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+            h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+            return h ^ (h >>> 31);
+        }
+    }
+
+    /**
+     * Columnar storage engine for log entries: one growable primitive column per field instead of one object per workout.
+     * Every type has exactly two metrics, kept in CSV order in the first/second columns
+     * (strength: sets, reps; cardio: duration, sets; endurance: distance, duration).
+     * Names are stored as ids into the store's name dictionary and dates as epoch-days.
+     * Rows keep insertion order; entry objects are only built as views when something is displayed.
+     * Indexed stores also maintain derived summaries and secondary indexes (by date, and by exercise and date)
+     * on every add; scratch stores used while loading skip them.
+     * Deleted rows keep their slot (so row numbers stay stable) but leave every index and summary; scratch stores
+     * may also hold tombstone rows, parsed from "delete;" lines, which indexed stores never take.
+     */
+    static final class LogStore {
+        private static final String[] TYPE_TAGS = {"strength", "cardio", "endurance"};
+
+        private byte[] types = new byte[64];
+        private int[] nameIds = new int[64], days = new int[64], firsts = new int[64], seconds = new int[64];
+        private int size;
+        private final BitSet deleted = new BitSet();
+        private final NameDictionary names;
+        private final ProgressIndex progress; // null for scratch stores
+        private final RowIndex dateIndex;
+        private RowIndex[] exerciseIndexes = new RowIndex[0];
+        private final Fingerprints fingerprints;
+
+        LogStore() {
+            this(new NameDictionary(), true);
+        }
+
+        LogStore(NameDictionary names, boolean indexed) {
+            this.names = names;
+            this.progress = indexed ? new ProgressIndex() : null;
+            this.dateIndex = indexed ? new RowIndex() : null;
+            this.fingerprints = indexed ? new Fingerprints() : null;
+        }
+
+        int size() { return size; }
+
+        boolean isEmpty() { return size == 0; }
+
+        /** Drops all rows and names. */
+        void clear() {
+            size = 0;
+            deleted.clear();
+            names.clear();
+            if (progress != null) {
+                progress.clear();
+                dateIndex.clear();
+                exerciseIndexes = new RowIndex[0];
+                fingerprints.clear();
+            }
+        }
+
+        /** Exercise type of a row; tombstone rows carry the TOMBSTONE flag on top. */
+        int type(int row) { return types[row]; }
+
+        boolean isTombstone(int row) { return types[row] >= TOMBSTONE; }
+
+        boolean isDeleted(int row) { return deleted.get(row); }
+
+        /** True for a record that is neither deleted nor a tombstone. */
+        boolean isLive(int row) { return types[row] < TOMBSTONE && !deleted.get(row); }
+
+        int deletedCount() { return deleted.cardinality(); }
+
+        /** The fields a tombstone row cancels, or that a tombstone for a record row would carry. */
+        Tombstone tombstone(int row) {
+            return new Tombstone(types[row] & ~TOMBSTONE, name(row), firsts[row], seconds[row], days[row]);
+        }
+
+        int nameId(int row) { return nameIds[row]; }
+
+        String name(int row) { return names.spelling(nameIds[row]); }
+
+        /** Exercise (case-folded name) id of a row, for grouping. */
+        int exerciseId(int row) { return names.exerciseId(nameIds[row]); }
+
+        /** Date of a row as days since 1970-01-01. */
+        int day(int row) { return days[row]; }
+
+        int sets(int row) {
+            switch (types[row]) {
+                case STRENGTH: return firsts[row];
+                case CARDIO: return seconds[row];
+                default: return 0;
+            }
+        }
+
+        int reps(int row) { return types[row] == STRENGTH ? seconds[row] : 0; }
+
+        /** Raw first and second numbers of a row, as stored in CSV. */
+        int first(int row) { return firsts[row]; }
+
+        int second(int row) { return seconds[row]; }
+
+        /** Duration in seconds (cardio and endurance). */
+        int duration(int row) {
+            switch (types[row]) {
+                case CARDIO: return firsts[row];
+                case ENDURANCE: return seconds[row];
+                default: return 0;
+            }
+        }
+
+        /** Distance in meters (endurance). */
+        int distance(int row) { return types[row] == ENDURANCE ? firsts[row] : 0; }
+
+        NameDictionary names() { return names; }
+
+        ProgressIndex progress() { return progress; }
+
+        RowIndex dateIndex() { return dateIndex; }
+
+        /** Returns the id for a name, assigning the next free id on first use. */
+        int intern(String name) { return names.intern(name); }
+
+        /**
+         * Appends a row.
+         * @return Index of the new row
+         */
+        int add(int type, int nameId, int first, int second, int day) {
+            int row = append(type, nameId, first, second, day);
+            if (progress != null) {
+                progress.add(this, row);
+                dateIndex.add(this, row);
+                exerciseIndex(exerciseId(row)).add(this, row);
+                fingerprints.add(this, row);
+            }
+            return row;
+        }
+
+        private int append(int type, int nameId, int first, int second, int day) {
+            if (size == types.length) grow();
+            types[size] = (byte) type;
+            nameIds[size] = nameId;
+            firsts[size] = first;
+            seconds[size] = second;
+            days[size] = day;
+            return size++;
+        }
+
+        /**
+         * Deletes a row: marks it and, in an indexed store, takes it out of the indexes and progress summaries.
+         * Costs a binary search and an array shift per index, like inserting a back-dated row.
+         */
+        void delete(int row) {
+            if (deleted.get(row)) return;
+            deleted.set(row);
+            if (progress == null) return;
+            dateIndex.remove(this, row);
+            RowIndex exerciseRows = exerciseIndex(exerciseId(row));
+            exerciseRows.remove(this, row);
+            fingerprints.remove(this, row);
+            progress.remove(this, row, exerciseRows);
+        }
+
+        /** All rows dated fromDay..toDay (inclusive, epoch-days), in date order. */
+        int[] between(int fromDay, int toDay) {
+            return dateIndex.between(this, fromDay, toDay);
+        }
+
+        /** Rows of one exercise dated fromDay..toDay (inclusive, epoch-days), in date order. */
+        int[] between(int exercise, int fromDay, int toDay) {
+            return exercise < exerciseIndexes.length && exerciseIndexes[exercise] != null
+                    ? exerciseIndexes[exercise].between(this, fromDay, toDay) : new int[0];
+        }
+
+        /** A row identical to the given fields (exercise id in this store's dictionary), or -1; indexed stores only. */
+        int findIdentical(int type, int exercise, int first, int second, int day) {
+            return fingerprints.find(this, type, exercise, first, second, day);
+        }
+
+        /** The latest n sessions of one exercise, oldest first. */
+        int[] lastSessions(int exercise, int n) {
+            return exercise < exerciseIndexes.length && exerciseIndexes[exercise] != null
+                    ? exerciseIndexes[exercise].last(n) : new int[0];
+        }
+
+        private RowIndex exerciseIndex(int exercise) {
+            if (exercise >= exerciseIndexes.length) {
+                exerciseIndexes = Arrays.copyOf(exerciseIndexes, Math.max(exercise + 1, exerciseIndexes.length * 2));
+            }
+            if (exerciseIndexes[exercise] == null) exerciseIndexes[exercise] = new RowIndex();
+            return exerciseIndexes[exercise];
+        }
+
+        /** Appends the fields of an entry object. */
+        int add(LogEntry entry) {
+            if (entry instanceof StrengthEntry se) return add(STRENGTH, intern(se.name), se.sets, se.reps, (int) se.date.toEpochDay());
+            if (entry instanceof CardioEntry ce) return add(CARDIO, intern(ce.name), ce.duration, ce.sets, (int) ce.date.toEpochDay());
+            EnduranceEntry ee = (EnduranceEntry) entry;
+            return add(ENDURANCE, intern(ee.name), ee.distance, ee.duration, (int) ee.date.toEpochDay());
+        }
+
+        /** Appends the last record parsed by a CSV cursor without building an entry object. */
+        int add(CsvRecord record) {
+            return add(record.type | (record.tombstone ? TOMBSTONE : 0), names.intern(record.source, record.nameFrom, record.nameTo),
+                    record.a, record.b, (int) record.epochDay);
+        }
+
+        /** Appends all rows of another store; see {@link #addAll(LogStore, IntPredicate)}. */
+        void addAll(LogStore other) {
+            addAll(other, row -> true);
+        }
+
+        /**
+         * Appends the selected rows of another store, mapping its name ids into this store's dictionary.
+         * Ids the other store resolved through this store's dictionary (as its parent) are kept as they are.
+         * Large batches are indexed in bulk: one sort and one merge per index instead of per-row inserts,
+         * which keeps loading older (back-dated) history linear.
+         * Deleted rows are not copied, and neither are tombstones when this store is indexed.
+         * @param keep Selects rows of the other store by row index
+         */
+        void addAll(LogStore other, IntPredicate keep) {
+            int shared = other.names.parent == names ? other.names.base : 0;
+            int[] nameMap = new int[other.names.size()];
+            Arrays.fill(nameMap, -1);
+            int start = size;
+            for (int row = 0; row < other.size; row++) {
+                if (!keep.test(row) || other.deleted.get(row) || (progress != null && other.isTombstone(row))) continue;
+                int id = other.nameIds[row];
+                if (nameMap[id] < 0) nameMap[id] = id < shared ? id : intern(other.names.spelling(id));
+                append(other.types[row], nameMap[id], other.firsts[row], other.seconds[row], other.days[row]);
+            }
+            if (progress == null) return;
+            if (size - start < BULK_INDEX_ROWS) {
+                for (int row = start; row < size; row++) {
+                    progress.add(this, row);
+                    dateIndex.add(this, row);
+                    exerciseIndex(exerciseId(row)).add(this, row);
+                    fingerprints.add(this, row);
+                }
+                return;
+            }
+            int count = size - start;
+            long[] keys = new long[count]; // (day, row) packed so a primitive sort orders by date, then row
+            for (int row = start; row < size; row++) {
+                progress.add(this, row);
+                fingerprints.add(this, row);
+                keys[row - start] = ((long) days[row] << 32) | row;
+            }
+            Arrays.sort(keys);
+            int[] sorted = new int[count];
+            int[] perExercise = new int[names.exerciseCount() + 1];
+            for (int i = 0; i < count; i++) {
+                sorted[i] = (int) keys[i];
+                perExercise[exerciseId(sorted[i]) + 1]++;
+            }
+            dateIndex.merge(this, sorted, 0, count);
+            // Bucket the date-sorted rows by exercise (a stable counting sort) and merge each bucket
+            for (int e = 1; e < perExercise.length; e++) perExercise[e] += perExercise[e - 1];
+            int[] byExercise = new int[count], fill = perExercise.clone();
+            for (int row : sorted) byExercise[fill[exerciseId(row)]++] = row;
+            for (int e = 0; e + 1 < perExercise.length; e++) {
+                if (perExercise[e] < perExercise[e + 1]) exerciseIndex(e).merge(this, byExercise, perExercise[e], perExercise[e + 1]);
+            }
+        }
+
+        /** Builds a display view of a row. */
+        LogEntry entry(int row) {
+            LocalDate date = LocalDate.ofEpochDay(days[row]);
+            switch (types[row]) {
+                case STRENGTH: return new StrengthEntry(name(row), firsts[row], seconds[row], date);
+                case CARDIO: return new CardioEntry(name(row), firsts[row], seconds[row], date);
+                default: return new EnduranceEntry(name(row), firsts[row], seconds[row], date);
+            }
+        }
+
+        /** Appends the CSV form of a row (same as the entry's toCSV(), behind "delete;" for a tombstone) to a buffer. */
+        void appendCSV(int row, StringBuilder out) {
+            if (isTombstone(row)) out.append(TOMBSTONE_PREFIX);
+            out.append(TYPE_TAGS[types[row] & ~TOMBSTONE]).append(';').append(name(row)).append(';')
+                    .append(firsts[row]).append(';').append(seconds[row]).append(';')
+                    .append(LocalDate.ofEpochDay(days[row]));
+        }
+
+        private void grow() {
+            int capacity = types.length * 2;
+            types = Arrays.copyOf(types, capacity);
+            nameIds = Arrays.copyOf(nameIds, capacity);
+            days = Arrays.copyOf(days, capacity);
+            firsts = Arrays.copyOf(firsts, capacity);
+            seconds = Arrays.copyOf(seconds, capacity);
+        }
+    }
+
+    /**
+     * Paged View Log renderer. Walks rows in date order (the whole log through the date index, or a filtered
+     * result) and formats one page at a time into a reusable buffer that is written to the console in one call.
+     * Archived months are loaded as the whole-log view reaches them: paging back past the first page loads the
+     * newest unloaded month, and jumping to a date loads every month from there on.
+     */
+    static final class LogPager {
+        private final LogStore store;
+        private final Segments segments; // null if there is no archive
+        private final StringBuilder buffer = new StringBuilder(8192);
+        private int[] rows; // Filtered rows in date order, or null for the whole log
+        private String label; // Describes the active filter
+        private int page;
+        String status; // One-off message shown under the page, cleared after rendering
+
+        LogPager(LogStore store, Segments segments) {
+            this.store = store;
+            this.segments = segments;
+        }
+
+        int count() { return rows != null ? rows.length : store.dateIndex().size(); }
+
+        int pageCount() { return Math.max(1, (count() + PAGE_SIZE - 1) / PAGE_SIZE); }
+
+        boolean next() {
+            if (page + 1 >= pageCount()) return false;
+            page++;
+            return true;
+        }
+
+        boolean previous() {
+            if (page == 0) {
+                if (rows != null || segments == null || !segments.hasUnloaded()) return false;
+                // Older entries sort in front of the current first one; stay just before it
+                int before = count();
+                segments.loadNewest(store);
+                int added = count() - before;
+                if (added == 0) return false;
+                page = (added - 1) / PAGE_SIZE;
+                return true;
+            }
+            page--;
+            return true;
+        }
+
+        /** True if older months may still be loaded into the whole-log view. */
+        boolean hasArchived() { return rows == null && segments != null && segments.hasUnloaded(); }
+
+        void last() { page = pageCount() - 1; }
+
+        /** Moves to the page holding the first entry on or after the given epoch-day. */
+        void jumpTo(int day) {
+            int position;
+            if (rows == null) {
+                if (segments != null) segments.ensureLoaded(store, day, Integer.MAX_VALUE);
+                position = store.dateIndex().lowerBound(store, day);
+            } else {
+                int low = 0, high = rows.length;
+                while (low < high) {
+                    int mid = (low + high) >>> 1;
+                    if (store.day(rows[mid]) < day) low = mid + 1;
+                    else high = mid;
+                }
+                position = low;
+            }
+            page = Math.min(position, Math.max(0, count() - 1)) / PAGE_SIZE;
+        }
+
+        /** Shows only the given rows (in date order), starting on their first page. */
+        void filter(int[] rows, String label) {
+            this.rows = rows;
+            this.label = label;
+            page = 0;
+        }
+
+        /** Drops the filter and shows the newest page of the whole log. */
+        void showAll() {
+            rows = null;
+            label = null;
+            last();
+        }
+
+        /**
+         * Row of the entry shown with the given number on the current page.
+         * @param number Number as typed (1 for the first entry of the page)
+         * @return The row, or -1 if the page shows no such entry
+         */
+        int rowAt(String number) {
+            long n = Parse.parseInt(number, 0, number.length());
+            if (n < 1 || n > PAGE_SIZE || page * PAGE_SIZE + n > count()) return -1; // INVALID is negative
+            int position = page * PAGE_SIZE + (int) n - 1;
+            return rows != null ? rows[position] : store.dateIndex().row(position);
+        }
+
+        /** Forgets a row that was deleted from the store, staying on the same page if it still exists. */
+        void removed(int row) {
+            if (rows != null) {
+                int at = 0;
+                while (at < rows.length && rows[at] != row) at++;
+                if (at < rows.length) {
+                    int[] kept = Arrays.copyOf(rows, rows.length - 1);
+                    System.arraycopy(rows, at + 1, kept, at, rows.length - at - 1);
+                    rows = kept;
+                }
+            }
+            page = Math.min(page, pageCount() - 1);
+        }
+
+        /** Formats the current page and writes it with a single console write. */
+        void render(PrintStream out) {
+            long start = System.nanoTime();
+            buffer.setLength(0);
+            int count = count();
+            if (count == 0) {
+                appendCentered(buffer, rows != null ? "No matching exercises."
+                        : hasArchived() ? "No recent exercises; 'p' loads older months." : "No exercises logged.", 100);
+            } else {
+                appendCentered(buffer, "📓 Exercise Log" + (label != null ? " (" + label + ")" : "")
+                        + " - page " + (page + 1) + "/" + pageCount() + ", " + count + (hasArchived() ? "+" : "") + " entries:", 100);
+                int end = Math.min(count, (page + 1) * PAGE_SIZE);
+                for (int position = page * PAGE_SIZE; position < end; position++) {
+                    int row = rows != null ? rows[position] : store.dateIndex().row(position);
+                    appendCentered(buffer, (position % PAGE_SIZE + 1) + ". " + store.entry(row), 100);
+                }
+            }
+            if (status != null) {
+                buffer.append('\n');
+                appendCentered(buffer, status, 100);
+                status = null;
+            }
+            out.print(buffer);
+            out.flush();
+            Metrics.RENDER_LOG.stop(start);
+        }
+    }
+
+    /**
+     * Write-ahead journal for new entries (log.txt.journal). Adds are appended here as checksummed CSV records
+     * and made durable according to the configured policy; checkpoints fold them into log.txt in one append.
+     * The header holds log.txt's length as of the last checkpoint, so recovery can tell how much of an
+     * interrupted checkpoint already reached log.txt and apply only the rest.
+     * Lines other processes append to log.txt are noticed when the journal next touches it and kept for
+     * takeAppended(); a checksum of the bytes before the base tells an append from a rewrite.
+     */
+    static final class Journal {
+        /** When appended records are forced to disk. */
+        enum Durability { ALWAYS, INTERVAL, EXIT }
+
+        private static final int HEADER_BYTES = 26; // "#base=" + 19 digits + newline, rewritten in place
+
+        private final Path logPath, journalPath;
+        private final Durability durability;
+        private final Object syncLock = new Object();
+        private final ByteArrayOutputStream pending = new ByteArrayOutputStream(); // CSV lines since the last checkpoint
+        private final CRC32 crc = new CRC32();
+        private FileChannel channel;
+        private ScheduledExecutorService flusher;
+        private long base; // log.txt length the pending records will be appended at
+        private int baseChecksum; // Snapshot.tailChecksum() of log.txt up to base
+        private final ByteArrayOutputStream appended = new ByteArrayOutputStream(); // Lines other processes appended, not yet taken
+        private boolean replaced; // log.txt was truncated or rewritten by another process since the last rebase()
+        private volatile long written, synced; // Sequence numbers of the last appended and last forced append
+        private int records; // Records since the last checkpoint
+        private FileChannel retired; // log.txt as it was before the last compaction, while lines may still reach it
+        private long retiredCopied, retiredUntil; // Its length carried over so far; System.nanoTime() it may close at
+
+        Journal(Path logPath, Durability durability, long intervalMillis) throws IOException {
+            this.logPath = logPath;
+            this.journalPath = Path.of(logPath + ".journal");
+            this.durability = durability;
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            reset(endWithNewline());
+            if (durability == Durability.INTERVAL) {
+                flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "journal-flusher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                flusher.scheduleWithFixedDelay(() -> {
+                    try {
+                        awaitDurable(Long.MAX_VALUE);
+                    } catch (IOException e) {
+                        System.out.println("Error syncing journal: " + e.getMessage());
+                    }
+                }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Recovers any journal left by a previous run, then opens a fresh one.
+         * The durability policy comes from the fitness.durability system property:
+         * "always" (default, fsync on every add), "exit" (fsync when the app closes) or an interval like "200ms".
+         */
+        static Journal open(Path logPath) throws IOException {
+            int recovered = recover(logPath);
+            if (recovered > 0) System.out.println("Recovered " + recovered + " journaled entries into " + logPath);
+            String setting = System.getProperty("fitness.durability", "always").trim().toLowerCase(Locale.ROOT);
+            if (setting.equals("always")) return new Journal(logPath, Durability.ALWAYS, 0);
+            if (setting.equals("exit")) return new Journal(logPath, Durability.EXIT, 0);
+            long millis = setting.endsWith("ms") ? Parse.parseInt(setting, 0, setting.length() - 2) : Parse.INVALID;
+            if (millis <= 0) {
+                System.out.println("Warning: invalid fitness.durability '" + setting + "' (use always, exit or e.g. 200ms); syncing every add");
+                return new Journal(logPath, Durability.ALWAYS, 0);
+            }
+            return new Journal(logPath, Durability.INTERVAL, millis);
+        }
+
+        /**
+         * Folds records left in a journal by a previous run into log.txt. Must run before log.txt is parsed.
+         * Torn records at the end of the journal (from a crash mid-write) are dropped.
+         * @return Number of records recovered
+         */
+        static int recover(Path logPath) throws IOException {
+            Path journalPath = Path.of(logPath + ".journal");
+            if (!Files.exists(journalPath)) return 0;
+            byte[] journal = Files.readAllBytes(journalPath);
+            Metrics.bytesRead.add(journal.length);
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            long base = -1;
+            int recovered = 0;
+            if (journal.length > 0) {
+                // A journal without a readable base cannot be applied safely; keep it for inspection
+                String header = new String(journal, 0, Math.min(journal.length, HEADER_BYTES), StandardCharsets.US_ASCII);
+                if (journal.length < HEADER_BYTES || !header.startsWith("#base=") || header.charAt(HEADER_BYTES - 1) != '\n') {
+                    throw new IOException("malformed header in " + journalPath + "; move it aside to start without it");
+                }
+                String digits = header.substring(6, HEADER_BYTES - 1);
+                try {
+                    base = Long.parseLong(digits);
+                } catch (NumberFormatException e) {
+                    base = -1;
+                }
+                if (base < 0) throw new IOException("malformed base '" + digits + "' in " + journalPath);
+                CRC32 crc = new CRC32();
+                int at = HEADER_BYTES;
+                while (at < journal.length) {
+                    int end = at;
+                    while (end < journal.length && journal[end] != '\n') end++;
+                    if (end == journal.length || end - at < 9 || journal[at + 8] != ';') break;
+                    crc.reset();
+                    crc.update(journal, at + 9, end - at - 9);
+                    long expected = Long.parseLong(new String(journal, at, 8, StandardCharsets.US_ASCII), 16);
+                    if (crc.getValue() != expected) break;
+                    payload.write(journal, at + 9, end - at - 8);
+                    recovered++;
+                    at = end + 1;
+                }
+            }
+            if (recovered > 0) {
+                byte[] records = payload.toByteArray();
+                try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                    long length = log.size();
+                    int applied = 0;
+                    if (length > base) {
+                        // The checkpoint appended, so other processes' lines may precede ours: look for the longest
+                        // prefix of our records that ends log.txt and starts a line at or after the base
+                        long from = Math.max(base, length - records.length), readFrom = Math.max(0, from - 1);
+                        byte[] tail = readFully(log, readFrom, length).array();
+                        for (int i = (int) (from - readFrom); i < tail.length && applied == 0; i++) {
+                            if ((i == 0 || tail[i - 1] == '\n') && Arrays.equals(tail, i, tail.length, records, 0, tail.length - i)) {
+                                applied = tail.length - i;
+                            }
+                        }
+                    }
+                    if (applied == 0 && length != base) {
+                        System.out.println("Warning: " + logPath + " changed after the last checkpoint; appending journal records at the end");
+                    }
+                    ByteBuffer rest = ByteBuffer.wrap(records, applied, records.length - applied);
+                    long position = applied > 0 ? length : newlineTerminate(log);
+                    while (rest.hasRemaining()) position += log.write(rest, position);
+                    log.force(true);
+                }
+            }
+            Files.delete(journalPath);
+            return recovered;
+        }
+
+        /**
+         * Appends CSV records for rows [from, to) of a store as one journal write.
+         * @return Sequence number to pass to commit()
+         */
+        synchronized long append(LogStore store, int from, int to) throws IOException {
+            return append(csvLines(store, from, to));
+        }
+
+        /**
+         * Appends CSV records (lines without line ends) as one journal write.
+         * @return Sequence number to pass to commit()
+         */
+        synchronized long append(List<String> csvLines) throws IOException {
+            StringBuilder lines = new StringBuilder();
+            for (String csv : csvLines) {
+                byte[] bytes = (csv + '\n').getBytes(StandardCharsets.UTF_8);
+                crc.reset();
+                crc.update(bytes, 0, bytes.length - 1);
+                String checksum = Long.toHexString(crc.getValue());
+                for (int i = checksum.length(); i < 8; i++) lines.append('0');
+                lines.append(checksum).append(';').append(csv).append('\n');
+                pending.write(bytes, 0, bytes.length);
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            Metrics.bytesWritten.add(buffer.remaining());
+            while (buffer.hasRemaining()) channel.write(buffer, channel.size());
+            records += csvLines.size();
+            return ++written;
+        }
+
+        /** CSV lines (without line ends) of rows [from, to) of a store. */
+        static List<String> csvLines(LogStore store, int from, int to) {
+            List<String> lines = new ArrayList<>(to - from);
+            StringBuilder csv = new StringBuilder();
+            for (int row = from; row < to; row++) {
+                csv.setLength(0);
+                store.appendCSV(row, csv);
+                lines.add(csv.toString());
+            }
+            return lines;
+        }
+
+        /** Makes an append durable if the policy syncs on every add; otherwise the flusher or close() does it. */
+        void commit(long sequence) throws IOException {
+            if (durability == Durability.ALWAYS) awaitDurable(sequence);
+        }
+
+        /**
+         * Group commit: forces the journal unless a concurrent caller's fsync already covered this sequence number,
+         * so appends that pile up during one fsync share the next one.
+         */
+        void awaitDurable(long sequence) throws IOException {
+            synchronized (syncLock) {
+                long target = written;
+                if (synced >= Math.min(sequence, target)) return;
+                channel.force(false);
+                synced = target;
+            }
+        }
+
+        /** True once enough records have piled up that they should be folded into log.txt. */
+        synchronized boolean needsCheckpoint() {
+            return records >= JOURNAL_CHECKPOINT_RECORDS || pending.size() >= JOURNAL_CHECKPOINT_BYTES;
+        }
+
+        /**
+         * Appends all journaled records to log.txt, forces it, and empties the journal.
+         * The records are written in append mode, so lines other processes append meanwhile are never overwritten;
+         * they may land before or after ours and are kept for takeAppended().
+         */
+        synchronized void checkpoint() throws IOException {
+            carryOver();
+            if (records == 0) return;
+            channel.force(false);
+            synced = written;
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (log.size() != base) {
+                    // Something else changed log.txt; move the base so recovery compares against the right bytes
+                    adopt(log, newlineTerminate(log));
+                    channel.force(false);
+                }
+            }
+            byte[] bytes = pending.toByteArray();
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.APPEND)) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                Metrics.bytesWritten.add(buffer.remaining());
+                while (buffer.hasRemaining()) log.write(buffer);
+                log.force(true);
+            }
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                long size = log.size(), start = find(log, base, size, bytes);
+                if (start < 0) {
+                    // Glued onto a partial line someone else was writing; nothing to tell apart any more
+                    System.out.println("Warning: another program was writing to " + logPath + " during a checkpoint; "
+                            + "lines it added show after a restart");
+                    reset(size);
+                    return;
+                }
+                if (start > base && !replaced) appended.write(readFully(log, base, start).array(), 0, (int) (start - base));
+                reset(start + bytes.length);
+            }
+        }
+
+        /** Offset of the first line start in log[from, to) where bytes follow in full, or -1. */
+        private static long find(FileChannel log, long from, long to, byte[] bytes) throws IOException {
+            if (to - from < bytes.length) return -1;
+            long readFrom = Math.max(0, from - 1);
+            byte[] region = readFully(log, readFrom, to).array();
+            for (int i = (int) (from - readFrom); i + bytes.length <= region.length; i++) {
+                if ((i == 0 || region[i - 1] == '\n') && Arrays.equals(region, i, i + bytes.length, bytes, 0, bytes.length)) return readFrom + i;
+            }
+            return -1;
+        }
+
+        /**
+         * Rewrites log.txt without deleted entries: checkpoints, then drops every tombstone together with the earliest
+         * identical record (the pairing loading applies) and copies all other lines unchanged. Tombstones that cancel
+         * nothing in log.txt belong to archived entries and are kept at the end. The copy is forced and renamed over
+         * log.txt, so a crash leaves either the old or the compacted file. Skipped if another process rewrote log.txt
+         * or appended to it while the copy was written (the next compaction catches up); lines that still reach the
+         * old file after that check, from programs that opened it before the rename, are carried over by carryOver().
+         */
+        synchronized void compact() throws IOException {
+            checkpoint();
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                if (log.size() != base) adopt(log, newlineTerminate(log));
+            }
+            if (replaced) return;
+            Map<String, Integer> cancels = new HashMap<>();
+            try (BufferedReader reader = Files.newBufferedReader(logPath, StandardCharsets.UTF_8)) {
+                for (String line; (line = reader.readLine()) != null; ) {
+                    if (line.startsWith(TOMBSTONE_PREFIX)) cancels.merge(canonical(line.substring(TOMBSTONE_PREFIX.length())), 1, Integer::sum);
+                }
+            }
+            Path temp = Path.of(logPath + ".compact");
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                 BufferedReader reader = Files.newBufferedReader(logPath, StandardCharsets.UTF_8)) {
+                for (String line; (line = reader.readLine()) != null; ) {
+                    if (line.isBlank() || line.startsWith(TOMBSTONE_PREFIX)) continue;
+                    if (!cancels.isEmpty() && cancelOne(cancels, canonical(line))) continue;
+                    writer.write(line);
+                    writer.newLine();
+                }
+                for (Map.Entry<String, Integer> cancel : cancels.entrySet()) {
+                    for (int i = 0; i < cancel.getValue(); i++) {
+                        writer.write(TOMBSTONE_PREFIX + cancel.getKey());
+                        writer.newLine();
+                    }
+                }
+                writer.flush();
+                out.getFD().sync();
+                Metrics.bytesWritten.add(out.getChannel().size());
+            }
+            // Held open across the rename, so appends that still reach the old file can be carried over
+            FileChannel old = FileChannel.open(logPath, StandardOpenOption.READ);
+            long covered = base; // Length of the old file the copy was made from
+            try {
+                if (old.size() != covered) {
+                    old.close();
+                    Files.delete(temp);
+                    return;
+                }
+                Snapshot.delete(logPath);
+                Files.move(temp, logPath, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                old.close();
+                throw e;
+            }
+            if (retired != null) retired.close(); // Carried over by the checkpoint above
+            retired = old;
+            retiredCopied = covered;
+            retiredUntil = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RETIRED_LOG_MILLIS);
+            reset(Files.size(logPath));
+            carryOver();
+        }
+
+        /**
+         * Appends the complete lines other programs wrote to the log.txt the last compaction replaced, through handles
+         * opened before the rename, onto the current log.txt, where takeAppended() finds them like any other append.
+         * The old file is closed on the first call RETIRED_LOG_MILLIS after the compaction.
+         */
+        private void carryOver() throws IOException {
+            if (retired == null) return;
+            long size = retired.size();
+            if (size > retiredCopied) {
+                ByteBuffer tail = readFully(retired, retiredCopied, size);
+                int end = tail.limit();
+                while (end > 0 && tail.get(end - 1) != '\n') end--;
+                tail.limit(end);
+                try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.APPEND)) {
+                    while (tail.hasRemaining()) log.write(tail);
+                    log.force(true);
+                }
+                retiredCopied += end;
+            }
+            if (System.nanoTime() - retiredUntil >= 0) {
+                retired.close();
+                retired = null;
+            }
+        }
+
+        /**
+         * Takes the complete lines other processes appended to log.txt since the last call, moving the base past them.
+         * A partly written last line is left for a later call.
+         * @return The lines, possibly none, or null if log.txt was truncated or rewritten (see rebase())
+         */
+        synchronized byte[] takeAppended() throws IOException {
+            carryOver();
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                long size = log.size();
+                if (!replaced && size != base) {
+                    if (size < base || Snapshot.tailChecksum(log, base) != baseChecksum) {
+                        replaced = true;
+                    } else {
+                        ByteBuffer tail = readFully(log, base, size);
+                        int end = tail.limit();
+                        while (end > 0 && tail.get(end - 1) != '\n') end--;
+                        appended.write(tail.array(), 0, end);
+                        if (end > 0) {
+                            writeHeader(base + end);
+                            channel.force(false);
+                        }
+                    }
+                }
+            }
+            if (replaced) return null;
+            byte[] lines = appended.toByteArray();
+            appended.reset();
+            return lines;
+        }
+
+        /**
+         * Starts over on log.txt as it is now, after another process replaced it: checkpoints pending records onto the
+         * new file and drops whatever was noticed about the old one. The caller reloads the log afterwards.
+         */
+        synchronized void rebase() throws IOException {
+            checkpoint();
+            replaced = false;
+            appended.reset();
+            reset(endWithNewline());
+        }
+
+        /**
+         * Accounts for log.txt having changed behind the journal's back: keeps the bytes appended after the base
+         * (up to end) for takeAppended(), or marks the file replaced, and moves the base to end.
+         */
+        private void adopt(FileChannel log, long end) throws IOException {
+            if (!replaced) {
+                if (end < base || Snapshot.tailChecksum(log, base) != baseChecksum) {
+                    replaced = true;
+                    appended.reset();
+                } else {
+                    ByteBuffer tail = readFully(log, base, end);
+                    appended.write(tail.array(), 0, tail.limit());
+                }
+            }
+            writeHeader(end);
+        }
+
+        private static ByteBuffer readFully(FileChannel log, long from, long to) throws IOException {
+            ByteBuffer bytes = ByteBuffer.allocate((int) (to - from));
+            while (bytes.hasRemaining() && log.read(bytes, from + bytes.position()) > 0) { }
+            Metrics.bytesRead.add(bytes.position());
+            return bytes.flip();
+        }
+
+        /** The canonical CSV of a record line, or the line itself if it does not parse. */
+        private static String canonical(String line) {
+            try {
+                return parseLine(line).toCSV();
+            } catch (IllegalArgumentException e) {
+                return line;
+            }
+        }
+
+        /** Empties the journal and records the log.txt length that future records will be appended at. */
+        synchronized void reset(long logLength) throws IOException {
+            channel.truncate(0);
+            writeHeader(logLength);
+            channel.force(false);
+            pending.reset();
+            records = 0;
+        }
+
+        /** Checkpoints, stops the flusher and removes the (empty) journal file. */
+        synchronized void close() throws IOException {
+            if (flusher != null) flusher.shutdown();
+            checkpoint();
+            if (retired != null) retired.close();
+            channel.close();
+            Files.deleteIfExists(journalPath);
+        }
+
+        private void writeHeader(long logLength) throws IOException {
+            base = logLength;
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                baseChecksum = Snapshot.tailChecksum(log, logLength);
+            }
+            String header = String.format("#base=%019d\n", logLength);
+            ByteBuffer buffer = ByteBuffer.wrap(header.getBytes(StandardCharsets.US_ASCII));
+            int position = 0;
+            while (buffer.hasRemaining()) position += channel.write(buffer, position);
+        }
+
+        /** Makes sure log.txt ends with a newline before records are appended; returns its length. */
+        private long endWithNewline() throws IOException {
+            try (FileChannel log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                return newlineTerminate(log);
+            }
+        }
+
+        private static long newlineTerminate(FileChannel log) throws IOException {
+            long length = log.size();
+            if (length == 0) return 0;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            log.read(last, length - 1);
+            if (last.get(0) == '\n') return length;
+            log.write(ByteBuffer.wrap(new byte[] {'\n'}), length);
+            return length + 1;
+        }
+    }
+
+    /**
+     * Background persistence for the main log: adds hand their CSV lines to a bounded queue and return at once,
+     * and a single writer thread drains whatever has piled up into one journal write (and one fsync, per the
+     * journal's durability policy). When the queue is full, adds wait for the writer instead of growing memory.
+     * Write errors are kept for the UI to report rather than printed from the writer thread.
+     */
+    static final class BackgroundWriter {
+        private static final List<String> STOP = List.of();
+        private static final Object COMPACT = new Object();
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY); // Line batches, flush latches and markers
+        private final Thread thread;
+        private final Journal journal;
+        private volatile IOException failure; // Oldest error not yet taken by the UI
+        private volatile boolean failed; // Set for good once any write failed
+
+        BackgroundWriter(Journal journal) {
+            this.journal = journal;
+            this.thread = new Thread(this::run, "log-writer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /** Queues CSV lines (without line ends) to be journaled, waiting only if the queue is full. */
+        void submit(List<String> lines) {
+            put(lines);
+        }
+
+        /** Queues a compaction of log.txt, run after everything submitted before it has been written. */
+        void compact() {
+            put(COMPACT);
+        }
+
+        /** Waits until everything submitted so far has been written (and forced, per the durability policy). */
+        void flush() {
+            CountDownLatch done = new CountDownLatch(1);
+            put(done);
+            awaitUninterruptibly(done);
+        }
+
+        /** Flushes and stops the writer thread. */
+        void close() {
+            flush();
+            put(STOP);
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        /** Returns the oldest write error not reported yet, clearing it, or null. */
+        IOException takeFailure() {
+            IOException e = failure;
+            failure = null;
+            return e;
+        }
+
+        /** True if any write has failed, so the files may lack entries that are in memory. */
+        boolean hasFailed() { return failed; }
+
+        private void run() {
+            List<Object> drained = new ArrayList<>();
+            List<String> lines = new ArrayList<>();
+            while (true) {
+                drained.clear();
+                try {
+                    drained.add(queue.take());
+                } catch (InterruptedException e) {
+                    continue; // Only close() stops the writer, so nothing queued is dropped
+                }
+                queue.drainTo(drained);
+                lines.clear();
+                boolean stop = false, compact = false;
+                for (Object item : drained) {
+                    if (item == STOP) stop = true;
+                    else if (item == COMPACT) compact = true;
+                    else if (item instanceof List<?> batch) batch.forEach(line -> lines.add((String) line));
+                }
+                long start = System.nanoTime();
+                try {
+                    if (!lines.isEmpty()) {
+                        journal.commit(journal.append(lines));
+                        if (journal.needsCheckpoint()) journal.checkpoint();
+                        Metrics.entriesWritten.add(lines.size());
+                        Metrics.APPEND_ROWS.stop(start);
+                    }
+                    if (compact) {
+                        start = System.nanoTime();
+                        journal.compact();
+                        Metrics.COMPACT_LOG.stop(start);
+                    }
+                } catch (IOException e) {
+                    failed = true;
+                    if (failure == null) failure = e;
+                }
+                for (Object item : drained) {
+                    if (item instanceof CountDownLatch done) done.countDown();
+                }
+                if (stop) return;
+            }
+        }
+
+        private void put(Object item) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    queue.put(item);
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        private static void awaitUninterruptibly(CountDownLatch latch) {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    latch.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Watches the directory of log.txt for changes made to it by other processes, such as a sync daemon appending
+     * sessions while the app is open. The watch thread only raises a flag; the UI thread checks it between screens
+     * and reads the changes through refreshLog(), so the log is never touched from two threads. The app's own
+     * writes raise the flag as well and turn out to add nothing there.
+     */
+    static final class LogWatcher {
+        private final WatchService service;
+        private final Path name;
+        private volatile boolean changed;
+
+        private LogWatcher(Path file) throws IOException {
+            Path absolute = file.toAbsolutePath();
+            service = absolute.getFileSystem().newWatchService();
+            name = absolute.getFileName();
+            absolute.getParent().register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+            Thread thread = new Thread(this::run, "log-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /** Starts watching a file (log.txt). */
+        static LogWatcher start(Path file) throws IOException {
+            return new LogWatcher(file);
+        }
+
+        /** Returns whether the file may have changed since the last call, clearing the flag. */
+        boolean takeChanged() {
+            if (!changed) return false;
+            changed = false;
+            return true;
+        }
+
+        /** Stops the watch thread. */
+        void close() throws IOException {
+            service.close();
+        }
+
+        private void run() {
+            try {
+                while (true) {
+                    WatchKey key = service.take();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        // An overflow means events were lost, so the file may have changed too
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || name.equals(event.context())) changed = true;
+                    }
+                    key.reset();
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                // Closed by closeLog()
+            }
+        }
+    }
+
+    /**
+     * Month-partitioned archive of older history: one CSV segment per month (log.d/YYYY-MM.txt) plus a manifest
+     * of committed segment lengths. log.txt keeps the recent months and everything newly added; at startup,
+     * entries older than the hot window are rolled into their month's segment. Segments are only parsed into the
+     * store when a view, query or progress calculation reaches back into their month.
+     * Changes are committed by atomically replacing the manifest: segment bytes past a committed length come
+     * from an interrupted roll and are truncated on recovery, and a pending log.txt replacement is finished.
+     */
+    static final class Segments {
+        private static final String PENDING_HEAD = "pending-head";
+        private static final Pattern SEGMENT_NAME = Pattern.compile("\\d{4}-(0[1-9]|1[0-2])\\.txt");
+
+        private final Path dir, manifest, head;
+        private final TreeMap<Integer, long[]> lengths = new TreeMap<>(); // Epoch-month -> {committed, written}
+        private final Set<Integer> loaded = new HashSet<>();
+        private final BitSet rows = new BitSet(); // Store rows parsed from segments
+        // Tombstones of log.txt cancelling archived entries, by epoch-month; applied when the month loads
+        private final Map<Integer, List<Tombstone>> pendingDeletes = new HashMap<>();
+
+        private Segments(Path dir, Path head) {
+            this.dir = dir;
+            this.manifest = dir.resolve("manifest");
+            this.head = head;
+        }
+
+        /**
+         * Reads the manifest and finishes or rolls back whatever a crash interrupted.
+         * @param dir Segment directory
+         * @param head The head log file (log.txt)
+         */
+        static Segments open(Path dir, Path head) throws IOException {
+            Segments segments = new Segments(dir, head);
+            Path headCopy = Path.of(head + ".tmp");
+            if (!Files.exists(segments.manifest)) {
+                Files.deleteIfExists(headCopy);
+                return segments;
+            }
+            boolean pendingHead = false;
+            for (String line : Files.readAllLines(segments.manifest, StandardCharsets.UTF_8)) {
+                if (line.equals(PENDING_HEAD)) {
+                    pendingHead = true;
+                } else if (!line.isBlank() && !line.startsWith("#")) {
+                    String[] parts = line.trim().split(" ");
+                    int month = monthOf(parts[0]);
+                    long length = Long.parseLong(parts[1]);
+                    segments.lengths.put(month, new long[] {length, length});
+                }
+            }
+            // The manifest was committed, so the prepared log.txt replacement belongs to it
+            if (pendingHead && Files.exists(headCopy)) {
+                Files.move(headCopy, head, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            }
+            Files.deleteIfExists(headCopy);
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*.txt")) {
+                for (Path file : files) {
+                    String name = file.getFileName().toString();
+                    if (!SEGMENT_NAME.matcher(name).matches()) {
+                        // Not ours: never delete or truncate files that do not follow the segment naming
+                        System.out.println("Warning: ignoring " + file + " (month segments are named YYYY-MM.txt)");
+                        continue;
+                    }
+                    long[] length = segments.lengths.get(monthOf(name));
+                    if (length == null) {
+                        Files.delete(file); // Written by a roll whose manifest never committed
+                        Snapshot.delete(file);
+                    } else if (Files.size(file) > length[0]) {
+                        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                            channel.truncate(length[0]);
+                        }
+                    }
+                }
+            }
+            if (pendingHead) segments.writeManifest(false);
+            return segments;
+        }
+
+        /** Months that have a segment, oldest first (epoch-months, see {@link #monthOfDay(int)}). */
+        Set<Integer> months() { return lengths.keySet(); }
+
+        boolean isLoaded(int month) { return loaded.contains(month); }
+
+        /** Identifies the committed segments: changes whenever a month is added to, created or removed. */
+        String fingerprint() {
+            CRC32 crc = new CRC32();
+            ByteBuffer entry = ByteBuffer.allocate(12);
+            for (Map.Entry<Integer, long[]> length : lengths.entrySet()) {
+                crc.update(entry.clear().putInt(length.getKey()).putLong(length.getValue()[0]).flip());
+            }
+            return lengths.size() + ":" + Long.toHexString(crc.getValue());
+        }
+
+        /** Committed bytes of all segments. */
+        long bytes() {
+            long bytes = 0;
+            for (long[] length : lengths.values()) bytes += length[0];
+            return bytes;
+        }
+
+        /** True if the month of an epoch-day has a segment that has not been parsed into the store yet. */
+        boolean holdsUnloaded(int day) {
+            int month = monthOfDay(day);
+            return lengths.containsKey(month) && !loaded.contains(month);
+        }
+
+        /** True if some archived month has not been parsed into the store yet. */
+        boolean hasUnloaded() { return loaded.size() < lengths.size(); }
+
+        /** True if a store row was parsed from a segment rather than taken from log.txt. */
+        boolean holds(int row) { return rows.get(row); }
+
+        /**
+         * Cancels an archived entry once its month is loaded: log.txt keeps the tombstone, segments are never rewritten.
+         * A month that is already loaded is not checked again, so callers delete loaded rows themselves.
+         */
+        void deleteWhenLoaded(Tombstone tombstone) {
+            int month = monthOfDay(tombstone.day());
+            if (!loaded.contains(month)) pendingDeletes.computeIfAbsent(month, m -> new ArrayList<>()).add(tombstone);
+        }
+
+        /**
+         * Parses every not-yet-loaded segment whose month overlaps fromDay..toDay into the store.
+         * @return Number of segments loaded
+         */
+        int ensureLoaded(LogStore store, int fromDay, int toDay) {
+            int count = 0;
+            for (int month : lengths.subMap(monthOfDay(fromDay), true, monthOfDay(toDay), true).keySet()) {
+                if (load(store, month)) count++;
+            }
+            return count;
+        }
+
+        /**
+         * Parses the newest segment that has not been loaded yet.
+         * @return Its month, or -1 if everything is loaded
+         */
+        int loadNewest(LogStore store) {
+            for (int month : lengths.descendingKeySet()) {
+                if (load(store, month)) return month;
+            }
+            return -1;
+        }
+
+        private boolean load(LogStore store, int month) {
+            if (!loaded.add(month)) return false;
+            int from = store.size();
+            parseLogFile(file(month).toFile(), store);
+            rows.set(from, store.size());
+            // Rollups already leave these out: they were built from log.txt and segments with tombstones applied
+            for (Tombstone tombstone : pendingDeletes.getOrDefault(month, List.of())) {
+                int row = tombstone.find(store, from);
+                if (row >= 0) store.delete(row);
+            }
+            pendingDeletes.remove(month);
+            return true;
+        }
+
+        /**
+         * Appends CSV lines to a month's segment past its committed length. Nothing is visible until commit().
+         */
+        void append(int month, byte[] lines) throws IOException {
+            Files.createDirectories(dir);
+            long[] length = lengths.computeIfAbsent(month, m -> new long[2]);
+            try (FileChannel channel = FileChannel.open(file(month), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                channel.truncate(length[1]);
+                ByteBuffer buffer = ByteBuffer.wrap(lines);
+                Metrics.bytesWritten.add(lines.length);
+                while (buffer.hasRemaining()) length[1] += channel.write(buffer, length[1]);
+                channel.force(true);
+            }
+        }
+
+        /**
+         * Commits appended segment data together with a replacement log.txt prepared at log.txt.tmp (if not null):
+         * the manifest rename is the commit point, after which the head replacement is finished.
+         */
+        void commit(Path headCopy) throws IOException {
+            for (long[] length : lengths.values()) length[0] = length[1];
+            writeManifest(headCopy != null);
+            if (headCopy != null) {
+                Files.move(headCopy, head, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                writeManifest(false);
+            }
+        }
+
+        /** Forgets data appended since the last commit (it is truncated on the next append or recovery). */
+        void rollback() {
+            lengths.values().removeIf(length -> length[0] == 0);
+            for (long[] length : lengths.values()) length[1] = length[0];
+        }
+
+        /**
+         * Drops all segments together with a replacement log.txt prepared at log.txt.tmp (if not null),
+         * e.g. when the full history is rewritten or cleared.
+         */
+        void removeAll(Path headCopy) throws IOException {
+            if (lengths.isEmpty() && !Files.exists(manifest)) {
+                if (headCopy != null) Files.move(headCopy, head, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            Set<Integer> months = new HashSet<>(lengths.keySet());
+            lengths.clear();
+            loaded.clear();
+            rows.clear();
+            pendingDeletes.clear();
+            commit(headCopy);
+            for (int month : months) {
+                Files.deleteIfExists(file(month));
+                Snapshot.delete(file(month));
+            }
+        }
+
+        /** Segment file of an epoch-month. */
+        Path file(int month) {
+            return dir.resolve(String.format("%04d-%02d.txt", month / 12, month % 12 + 1));
+        }
+
+        private void writeManifest(boolean pendingHead) throws IOException {
+            Files.createDirectories(dir);
+            StringBuilder text = new StringBuilder("# Committed length of each month segment\n");
+            if (pendingHead) text.append(PENDING_HEAD).append('\n');
+            for (Map.Entry<Integer, long[]> entry : lengths.entrySet()) {
+                String name = file(entry.getKey()).getFileName().toString();
+                text.append(name, 0, name.length() - 4).append(' ').append(entry.getValue()[0]).append('\n');
+            }
+            Path temp = dir.resolve("manifest.tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+                while (buffer.hasRemaining()) channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(temp, manifest, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /** Epoch-month (year * 12 + month - 1) of an epoch-day. */
+        static int monthOfDay(int day) {
+            return Parse.epochMonth(day);
+        }
+
+        private static int monthOf(String yearMonth) {
+            return Integer.parseInt(yearMonth.substring(0, 4)) * 12 + Integer.parseInt(yearMonth.substring(5, 7)) - 1;
+        }
+    }
+
+    /**
+     * Bloom filter over the fingerprints of every archived entry, so duplicate checks against months that are
+     * not loaded only parse a segment when its entry might be there. Keys hash the case-folded exercise name
+     * rather than a dictionary id, so the filter stays valid across runs; it is persisted in the segment directory
+     * and tagged with the segments' fingerprint to detect that it is stale.
+     */
+    static final class Bloom {
+        private static final String MAGIC = "FLBLOOM1";
+        private static final int HASHES = 7, BITS_PER_ENTRY = 16, MIN_BITS_PER_ENTRY = 10;
+
+        private final long[] words;
+        private long count;
+
+        private Bloom(int words) { this.words = new long[words]; }
+
+        /** Sizes a filter for the given number of entries (at BITS_PER_ENTRY bits each, at least 64 Kbit). */
+        static Bloom forEntries(long entries) {
+            long bits = Math.max(1 << 16, Long.highestOneBit(Math.max(1, entries * BITS_PER_ENTRY) - 1) << 1);
+            return new Bloom((int) Math.min(bits / 64, 1 << 30));
+        }
+
+        static long key(int type, String exercise, int first, int second, int day) {
+            return Fingerprints.hash(type, exercise.hashCode(), first, second, day);
+        }
+
+        void add(long key) {
+            long bits = (long) words.length * 64;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(key + i * (key >>> 32 | 1), bits);
+                words[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            count++;
+        }
+
+        boolean mightContain(long key) {
+            long bits = (long) words.length * 64;
+            for (int i = 0; i < HASHES; i++) {
+                long bit = Math.floorMod(key + i * (key >>> 32 | 1), bits);
+                if ((words[(int) (bit >>> 6)] & 1L << bit) == 0) return false;
+            }
+            return true;
+        }
+
+        /** True once so many entries were added that false positives get frequent (about 1%); the filter should be rebuilt. */
+        boolean isFull() { return count * MIN_BITS_PER_ENTRY > (long) words.length * 64; }
+
+        /** Adds a row of a store. */
+        void add(LogStore store, int row) {
+            add(key(store.type(row), store.name(row).toLowerCase(Locale.ROOT), store.first(row), store.second(row), store.day(row)));
+        }
+
+        /** Writes the filter under a temporary name and renames it over the file. */
+        void save(Path file, String fingerprint) throws IOException {
+            Path temp = Path.of(file + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeBytes(MAGIC);
+                out.writeUTF(fingerprint);
+                out.writeLong(count);
+                out.writeInt(words.length);
+                for (long word : words) out.writeLong(word);
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /**
+         * Reads a filter saved for the given segments.
+         * @return The filter, or null if the file is missing, unreadable or was saved for other segment contents
+         */
+        static Bloom load(Path file, String fingerprint) {
+            if (!Files.exists(file)) return null;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+                byte[] magic = new byte[MAGIC.length()];
+                in.readFully(magic);
+                if (!MAGIC.equals(new String(magic, StandardCharsets.US_ASCII)) || !in.readUTF().equals(fingerprint)) return null;
+                long count = in.readLong();
+                Bloom bloom = new Bloom(in.readInt());
+                for (int i = 0; i < bloom.words.length; i++) bloom.words[i] = in.readLong();
+                bloom.count = count;
+                return bloom;
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Binary snapshot of a CSV log file (stored next to it as &lt;file&gt;.snap) so startup can skip re-parsing text.
+     * The snapshot holds the file's names once, in a dictionary header, and each entry as a compact record
+     * (type byte, then varints for the name id, both numbers and the date as an epoch-day delta). It covers the
+     * CSV file up to a recorded length, checked against a checksum of all bytes up to it (so an in-place edit is
+     * noticed too); lines appended after that are parsed as CSV. A snapshot that does not match its file, or fails its own checksum, is ignored.
+     * The CSV file remains the source of truth.
+     */
+    static final class Snapshot {
+        private static final byte[] MAGIC = "FLSNAP02".getBytes(StandardCharsets.US_ASCII);
+        private static final int TAIL_BYTES = 4096; // CSV bytes before a length that tailChecksum() covers
+        private static final long CHECKSUM_WINDOW = 1 << 28; // Bytes mapped at a time by checksum()
+
+        /** Covered CSV length and line count, or null if there is no usable snapshot. */
+        record Coverage(long length, int lines) {}
+
+        static Path pathOf(Path csv) { return Path.of(csv + ".snap"); }
+
+        /**
+         * Maps the snapshot of a CSV file and appends its entries to a store.
+         * @return What part of the CSV file the entries cover, or null if nothing was added
+         */
+        static Coverage read(Path csv, LogStore target) {
+            Path path = pathOf(csv);
+            if (!Files.exists(path)) return null;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+                 FileChannel text = FileChannel.open(csv, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size < MAGIC.length + 20 || size > Integer.MAX_VALUE) return null;
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                CRC32 crc = new CRC32();
+                crc.update(buffer.slice(0, (int) size - 4));
+                if ((int) crc.getValue() != buffer.getInt((int) size - 4)) return null;
+                for (int i = 0; i < MAGIC.length; i++) if (buffer.get(i) != MAGIC[i]) return null;
+                buffer.position(MAGIC.length);
+                long length = buffer.getLong();
+                int lines = buffer.getInt(), textCrc = buffer.getInt();
+                if (length > text.size() || textCrc != checksum(text, length)) return null;
+
+                LogStore rows = new LogStore(new NameDictionary(target.names()), false);
+                int[] nameIds = new int[readVarint(buffer)];
+                for (int i = 0; i < nameIds.length; i++) {
+                    int bytes = readVarint(buffer);
+                    nameIds[i] = rows.names().intern(buffer, buffer.position(), buffer.position() + bytes);
+                    buffer.position(buffer.position() + bytes);
+                }
+                int day = 0;
+                for (int count = readVarint(buffer); count > 0; count--) {
+                    int type = buffer.get();
+                    int nameId = nameIds[readVarint(buffer)];
+                    int first = unZigZag(readVarint(buffer)), second = unZigZag(readVarint(buffer));
+                    day += unZigZag(readVarint(buffer));
+                    rows.add(type, nameId, first, second, day);
+                }
+                target.addAll(rows);
+                Metrics.bytesRead.add(size);
+                return new Coverage(length, lines);
+            } catch (IOException | RuntimeException e) {
+                return null; // Unreadable or stale; the CSV file is parsed instead
+            }
+        }
+
+        /**
+         * Writes a snapshot of rows [from, to) of a store, which must be exactly the entries of the CSV file's
+         * first length bytes (lines lines), in file order. Written under a temporary name and renamed into place.
+         */
+        static void write(Path csv, long length, int lines, LogStore store, int from, int to) throws IOException {
+            Path path = pathOf(csv), temp = Path.of(path + ".tmp");
+            try (FileChannel text = FileChannel.open(csv, StandardOpenOption.READ);
+                 FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                Output out = new Output(channel);
+                out.bytes(MAGIC, MAGIC.length);
+                out.fixed(length, 8);
+                out.fixed(lines, 4);
+                out.fixed(checksum(text, length), 4);
+                // Local name ids in order of first use, so the header only lists names this file uses
+                int[] localIds = new int[store.names().size()];
+                List<Integer> used = new ArrayList<>();
+                for (int row = from; row < to; row++) {
+                    int id = store.nameId(row);
+                    if (localIds[id] == 0) {
+                        used.add(id);
+                        localIds[id] = used.size();
+                    }
+                }
+                out.varint(used.size());
+                for (int id : used) {
+                    byte[] bytes = store.names().spelling(id).getBytes(StandardCharsets.UTF_8);
+                    out.varint(bytes.length);
+                    out.bytes(bytes, bytes.length);
+                }
+                out.varint(to - from);
+                int day = 0;
+                for (int row = from; row < to; row++) {
+                    out.raw(store.type(row));
+                    out.varint(localIds[store.nameId(row)] - 1);
+                    out.varint(zigZag(store.first(row)));
+                    out.varint(zigZag(store.second(row)));
+                    out.varint(zigZag(store.day(row) - day));
+                    day = store.day(row);
+                }
+                out.finish();
+                Metrics.bytesWritten.add(channel.size());
+            }
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /** Removes the snapshot of a CSV file that is about to be rewritten. */
+        static void delete(Path csv) throws IOException {
+            Files.deleteIfExists(pathOf(csv));
+        }
+
+        /** CRC32 of the first length bytes of a CSV file. */
+        static int checksum(FileChannel text, long length) throws IOException {
+            if (length > text.size()) throw new IOException("CSV file shorter than snapshot");
+            CRC32 crc = new CRC32();
+            for (long from = 0; from < length; from += CHECKSUM_WINDOW) {
+                crc.update(text.map(FileChannel.MapMode.READ_ONLY, from, Math.min(CHECKSUM_WINDOW, length - from)));
+            }
+            return (int) crc.getValue();
+        }
+
+        /** CRC32 of the last TAIL_BYTES bytes before a length: a cheap check that a file was only appended to. */
+        static int tailChecksum(FileChannel text, long length) throws IOException {
+            long from = Math.max(0, length - TAIL_BYTES);
+            ByteBuffer tail = ByteBuffer.allocate((int) (length - from));
+            while (tail.hasRemaining() && text.read(tail, from + tail.position()) > 0) { }
+            if (tail.hasRemaining()) throw new IOException("CSV file shorter than snapshot");
+            CRC32 crc = new CRC32();
+            crc.update(tail.flip());
+            return (int) crc.getValue();
+        }
+
+        private static int readVarint(ByteBuffer buffer) {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) return value;
+                if (shift >= 28) throw new IllegalStateException("malformed varint");
+            }
+        }
+
+        /** Maps signed ints to unsigned ones and back so small negative values stay short. */
+        private static int zigZag(int value) {
+            return (value << 1) ^ (value >> 31);
+        }
+
+        private static int unZigZag(int value) {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        /** Buffered channel writer that keeps a running CRC32 and appends it on finish(). */
+        private static final class Output {
+            private final FileChannel channel;
+            private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            private final CRC32 crc = new CRC32();
+
+            Output(FileChannel channel) {
+                this.channel = channel;
+            }
+
+            void raw(int b) throws IOException {
+                if (!buffer.hasRemaining()) flush();
+                buffer.put((byte) b);
+            }
+
+            void varint(int value) throws IOException {
+                while ((value & ~0x7F) != 0) {
+                    raw((value & 0x7F) | 0x80);
+                    value >>>= 7;
+                }
+                raw(value);
+            }
+
+            void fixed(long value, int bytes) throws IOException {
+                for (int shift = (bytes - 1) * 8; shift >= 0; shift -= 8) raw((int) (value >>> shift));
+            }
+
+            void bytes(byte[] bytes, int length) throws IOException {
+                for (int i = 0; i < length; i++) raw(bytes[i]);
+            }
+
+            void finish() throws IOException {
+                flush();
+                fixed((int) crc.getValue(), 4);
+                buffer.flip();
+                while (buffer.hasRemaining()) channel.write(buffer);
+            }
+
+            private void flush() throws IOException {
+                buffer.flip();
+                crc.update(buffer.duplicate());
+                while (buffer.hasRemaining()) channel.write(buffer);
+                buffer.clear();
+            }
+        }
+    }
+
+    /**
+     * Always-on instrumentation: latency timers for the main operations and counters for entries and I/O.
+     * Recording is a few uncontended adder increments (no locks, no allocation), so it stays enabled.
+     * Everything is exposed through JMX (domain "fitnesslogger") and the hidden 'stats' menu command.
+     */
+    static final class Metrics {
+        /** JMX view of a timer. */
+        public interface TimerMBean {
+            long getCount();
+            double getMeanMillis();
+            double getMaxMillis();
+            double getP50Millis();
+            double getP90Millis();
+            double getP99Millis();
+        }
+
+        /** JMX view of the counters. */
+        public interface CountersMBean {
+            int getEntriesInMemory();
+            long getEntriesParsed();
+            long getEntriesWritten();
+            long getParseFailures();
+            long getBytesRead();
+            long getBytesWritten();
+        }
+
+        /**
+         * Latency histogram with power-of-two microsecond buckets: bucket i counts durations below 2^i µs
+         * (and at least half that), the last bucket everything longer. Percentiles report the bucket's upper bound.
+         */
+        static final class Timer implements TimerMBean {
+            private static final int BUCKETS = 32;
+
+            final String name;
+            private final LongAdder count = new LongAdder(), totalNanos = new LongAdder();
+            private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+            private final LongAdder[] buckets = new LongAdder[BUCKETS];
+
+            Timer(String name) {
+                this.name = name;
+                for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+            }
+
+            /** Records the time since a System.nanoTime() reading. */
+            void stop(long startNanos) {
+                long nanos = System.nanoTime() - startNanos;
+                count.increment();
+                totalNanos.add(nanos);
+                maxNanos.accumulate(nanos);
+                buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos / 1000))].increment();
+            }
+
+            @Override
+            public long getCount() { return count.sum(); }
+
+            @Override
+            public double getMeanMillis() {
+                long count = this.count.sum();
+                return count == 0 ? 0 : totalNanos.sum() / 1e6 / count;
+            }
+
+            @Override
+            public double getMaxMillis() { return maxNanos.get() / 1e6; }
+
+            @Override
+            public double getP50Millis() { return percentileMillis(0.50); }
+
+            @Override
+            public double getP90Millis() { return percentileMillis(0.90); }
+
+            @Override
+            public double getP99Millis() { return percentileMillis(0.99); }
+
+            double percentileMillis(double percentile) {
+                long[] counts = new long[BUCKETS];
+                long total = 0;
+                for (int i = 0; i < BUCKETS; i++) total += counts[i] = buckets[i].sum();
+                if (total == 0) return 0;
+                long rank = (long) Math.ceil(percentile * total), seen = 0;
+                for (int i = 0; i < BUCKETS - 1; i++) {
+                    seen += counts[i];
+                    if (seen >= rank) return Math.min((1L << i) / 1e3, getMaxMillis());
+                }
+                return getMaxMillis();
+            }
+        }
+
+        static final Timer LOAD_LOG = new Timer("loadLog"), SAVE_LOG = new Timer("saveLog"),
+                ADD_STRENGTH = new Timer("addStrength"), ADD_CARDIO = new Timer("addCardio"),
+                ADD_ENDURANCE = new Timer("addEndurance"), APPEND_ROWS = new Timer("appendRows"),
+                RENDER_LOG = new Timer("viewLogRender"), SHOW_PROGRESS = new Timer("showProgress"),
+                ANALYTICS = new Timer("analytics"), TOTALS = new Timer("totals"), HTTP_REQUEST = new Timer("httpRequest"),
+                EDIT_ENTRY = new Timer("editEntry"), COMPACT_LOG = new Timer("compactLog");
+        static final Timer[] TIMERS = {LOAD_LOG, SAVE_LOG, ADD_STRENGTH, ADD_CARDIO, ADD_ENDURANCE, APPEND_ROWS, RENDER_LOG, SHOW_PROGRESS,
+                ANALYTICS, TOTALS, HTTP_REQUEST, EDIT_ENTRY, COMPACT_LOG};
+
+        static final LongAdder entriesParsed = new LongAdder(), entriesWritten = new LongAdder(), parseFailures = new LongAdder(),
+                bytesRead = new LongAdder(), bytesWritten = new LongAdder();
+
+        static final class Counters implements CountersMBean {
+            // Deleted rows stay in the store until the next load; the main log never holds tombstone rows
+            @Override
+            public int getEntriesInMemory() { return log.size() - log.deletedCount(); }
+
+            @Override
+            public long getEntriesParsed() { return entriesParsed.sum(); }
+
+            @Override
+            public long getEntriesWritten() { return entriesWritten.sum(); }
+
+            @Override
+            public long getParseFailures() { return parseFailures.sum(); }
+
+            @Override
+            public long getBytesRead() { return bytesRead.sum(); }
+
+            @Override
+            public long getBytesWritten() { return bytesWritten.sum(); }
+        }
+
+        static final Counters COUNTERS = new Counters();
+
+        /** Registers the counters and timers with the platform MBean server (once). */
+        static synchronized void register() {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            try {
+                ObjectName counters = new ObjectName("fitnesslogger:type=Counters");
+                if (server.isRegistered(counters)) return;
+                server.registerMBean(new StandardMBean(COUNTERS, CountersMBean.class), counters);
+                for (Timer timer : TIMERS) {
+                    server.registerMBean(new StandardMBean(timer, TimerMBean.class), new ObjectName("fitnesslogger:type=Timer,name=" + timer.name));
+                }
+            } catch (JMException e) {
+                System.out.println("Error registering metrics: " + e.getMessage());
+            }
+        }
+
+        /** Formats all counters and timers as centered report lines. */
+        static List<String> report() {
+            List<String> lines = new ArrayList<>();
+            lines.add("Entries in memory: " + COUNTERS.getEntriesInMemory() + ", parsed: " + entriesParsed.sum()
+                    + ", written: " + entriesWritten.sum() + ", parse failures: " + parseFailures.sum());
+            lines.add("I/O: " + bytesRead.sum() + " bytes read, " + bytesWritten.sum() + " bytes written");
+            lines.add("");
+            lines.add(String.format("%-14s %8s %10s %10s %10s %10s %10s", "Timer (ms)", "count", "mean", "p50", "p90", "p99", "max"));
+            for (Timer timer : TIMERS) {
+                lines.add(String.format("%-14s %8d %10.3f %10.3f %10.3f %10.3f %10.3f", timer.name, timer.getCount(), timer.getMeanMillis(),
+                        timer.getP50Millis(), timer.getP90Millis(), timer.getP99Millis(), timer.getMaxMillis()));
+            }
+            return lines;
+        }
+    }
+
+    /**
+     * HTTP server mode (--serve): logs for many gym members at once, each in its own directory
+     * (members/&lt;id&gt;/log.txt with its own journal), so writers for different members share no lock or file.
+     * Within a member a read-write lock guards the in-memory store; adds only hold it while adding rows and
+     * appending them to the journal, and wait for the fsync outside it, so concurrent adds share group commits.
+     * Requests run one per virtual thread where the JDK has them (21+), otherwise on a cached thread pool.
+     * <pre>
+     * POST /members/{id}/entries          body: records in headless-import format, one per line
+     * GET  /members/{id}/entries?from=dd/MM/yyyy&amp;to=dd/MM/yyyy&amp;exercise=name&amp;limit=n   CSV lines in date order
+     * GET  /members/{id}/progress         progress summary
+     * </pre>
+     */
+    static final class Server {
+        private static final Pattern MEMBER_ID = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+        private static final int MAX_BODY_BYTES = 8 << 20; // Larger add requests are refused with 413
+
+        private final Path root;
+        private final ConcurrentHashMap<String, Member> members = new ConcurrentHashMap<>();
+        private HttpServer http;
+        private ExecutorService executor;
+
+        Server(Path root) {
+            this.root = root;
+        }
+
+        record AddResult(int accepted, int duplicates, List<String> rejects) {}
+
+        /** One member's log, loaded on first use. */
+        static final class Member {
+            private final Path logPath;
+            private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+            private volatile boolean loaded;
+            private LogStore store; // Guarded by lock
+            private Journal journal;
+
+            Member(Path dir) {
+                this.logPath = dir.resolve("log.txt");
+            }
+
+            private void ensureLoaded() throws IOException {
+                if (loaded) return;
+                lock.writeLock().lock();
+                try {
+                    if (loaded) return;
+                    Files.createDirectories(logPath.getParent());
+                    journal = Journal.open(logPath);
+                    store = new LogStore();
+                    if (Files.size(logPath) > 0) {
+                        // Parsed aside first: a "delete;" line cancels its record wherever that is in the file
+                        LogStore parsed = new LogStore(new NameDictionary(store.names()), false);
+                        parseLogFile(logPath.toFile(), parsed);
+                        applyTombstones(parsed);
+                        store.addAll(parsed, parsed::isLive);
+                    }
+                    loaded = true;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+
+            /**
+             * Adds records in headless-import format, skipping invalid ones and handling duplicates per DUPLICATES.
+             * @return Number of records added, how many repeated logged entries, and why the others were rejected
+             */
+            AddResult add(List<String> records) throws IOException {
+                ensureLoaded();
+                List<String> rejects = new ArrayList<>();
+                int accepted = 0, duplicates = 0, lineNumber = 0;
+                long sequence = -1;
+                lock.writeLock().lock();
+                try {
+                    LogStore batch = new LogStore(new NameDictionary(store.names()), false);
+                    for (String record : records) {
+                        lineNumber++;
+                        if (record.isBlank() || record.startsWith("#")) continue;
+                        String error = importRecord(batch, record);
+                        if (error == null) accepted++;
+                        else rejects.add("Rejected line " + lineNumber + ": " + error);
+                    }
+                    BitSet repeated = DUPLICATES == DuplicatePolicy.ALLOW ? new BitSet() : duplicates(store, batch);
+                    duplicates = repeated.cardinality();
+                    if (DUPLICATES == DuplicatePolicy.SKIP) accepted -= duplicates;
+                    int from = store.size();
+                    store.addAll(batch, row -> DUPLICATES != DuplicatePolicy.SKIP || !repeated.get(row));
+                    if (store.size() > from) sequence = journal.append(store, from, store.size());
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                if (sequence >= 0) {
+                    journal.commit(sequence);
+                    if (journal.needsCheckpoint()) journal.checkpoint();
+                    Metrics.entriesWritten.add(accepted);
+                }
+                return new AddResult(accepted, duplicates, rejects);
+            }
+
+            /** CSV lines of the entries dated fromDay..toDay (of one exercise, if given), the latest limit of them. */
+            List<String> list(int fromDay, int toDay, String exercise, int limit) throws IOException {
+                ensureLoaded();
+                lock.readLock().lock();
+                try {
+                    int[] rows;
+                    if (exercise == null) {
+                        rows = store.between(fromDay, toDay);
+                    } else {
+                        int id = store.names().findExercise(exercise);
+                        rows = id < 0 ? new int[0] : store.between(id, fromDay, toDay);
+                    }
+                    List<String> lines = new ArrayList<>();
+                    StringBuilder line = new StringBuilder();
+                    for (int i = Math.max(0, rows.length - limit); i < rows.length; i++) {
+                        line.setLength(0);
+                        store.appendCSV(rows[i], line);
+                        lines.add(line.toString());
+                    }
+                    return lines;
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            List<String> progress() throws IOException {
+                ensureLoaded();
+                lock.readLock().lock();
+                try {
+                    return progressReport(store);
+                } finally {
+                    lock.readLock().unlock();
+                }
+            }
+
+            void close() throws IOException {
+                lock.writeLock().lock();
+                try {
+                    if (journal != null) journal.close();
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        }
+
+        /** Starts listening on the loopback interface only; port 0 picks a free port. */
+        void start(int port) throws IOException {
+            start(InetAddress.getLoopbackAddress(), port);
+        }
+
+        /** Starts listening on one address (the wildcard address for all interfaces); port 0 picks a free port. */
+        void start(InetAddress address, int port) throws IOException {
+            http = HttpServer.create(new InetSocketAddress(address, port), 1024);
+            executor = requestExecutor();
+            http.setExecutor(executor);
+            http.createContext("/members/", this::handle);
+            http.start();
+        }
+
+        int port() { return http.getAddress().getPort(); }
+
+        /** Stops accepting requests, waits briefly for running ones, and folds every member's journal into its log. */
+        void stop() {
+            http.stop(1);
+            executor.shutdown();
+            for (Member member : members.values()) {
+                try {
+                    member.close();
+                } catch (IOException e) {
+                    System.out.println("Error closing member log: " + e.getMessage());
+                }
+            }
+        }
+
+        private void handle(HttpExchange exchange) {
+            long start = System.nanoTime();
+            try {
+                String[] path = exchange.getRequestURI().getPath().split("/");
+                // "", "members", id, resource
+                if (path.length != 4 || !MEMBER_ID.matcher(path[2]).matches()) {
+                    respond(exchange, 404, List.of("Unknown path; use /members/{id}/entries or /members/{id}/progress"));
+                    return;
+                }
+                String method = exchange.getRequestMethod(), resource = path[3];
+                if (resource.equals("entries") && method.equals("POST")) {
+                    byte[] body;
+                    try (InputStream in = exchange.getRequestBody()) {
+                        body = in.readNBytes(MAX_BODY_BYTES + 1);
+                    }
+                    if (body.length > MAX_BODY_BYTES) {
+                        respond(exchange, 413, List.of("Request body over " + (MAX_BODY_BYTES >> 20) + " MB; split the records into several requests"));
+                        return;
+                    }
+                    List<String> records = new String(body, StandardCharsets.UTF_8).lines().toList();
+                    AddResult result = member(path[2], true).add(records);
+                    List<String> lines = new ArrayList<>();
+                    lines.add("Added " + result.accepted() + " entries.");
+                    if (result.duplicates() > 0) {
+                        lines.add(result.duplicates() + (DUPLICATES == DuplicatePolicy.SKIP ? " duplicates of logged entries skipped." : " of them duplicate logged entries."));
+                    }
+                    lines.addAll(result.rejects());
+                    respond(exchange, result.accepted() == 0 && !result.rejects().isEmpty() ? 400 : 200, lines);
+                } else if ((resource.equals("entries") || resource.equals("progress")) && method.equals("GET")) {
+                    Member member = member(path[2], false);
+                    if (member == null) {
+                        respond(exchange, 404, List.of("Unknown member '" + path[2] + "'"));
+                    } else if (resource.equals("progress")) {
+                        respond(exchange, 200, member.progress());
+                    } else {
+                        Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+                        LocalDate from = query.containsKey("from") ? parseDate(query.get("from")) : LocalDate.MIN;
+                        LocalDate to = query.containsKey("to") ? parseDate(query.get("to")) : LocalDate.MAX;
+                        long limit = query.containsKey("limit") ? Parse.parseInt(query.get("limit"), 0, query.get("limit").length()) : Integer.MAX_VALUE;
+                        if (from == null || to == null || limit < 0) {
+                            respond(exchange, 400, List.of("Invalid from, to or limit (dates are dd/MM/yyyy)"));
+                            return;
+                        }
+                        int fromDay = (int) Math.max(Integer.MIN_VALUE, from.toEpochDay());
+                        int toDay = (int) Math.min(Integer.MAX_VALUE, to.toEpochDay());
+                        respond(exchange, 200, member.list(fromDay, toDay, query.get("exercise"), (int) Math.min(limit, Integer.MAX_VALUE)));
+                    }
+                } else {
+                    respond(exchange, 405, List.of("Use POST or GET on entries, GET on progress"));
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Error handling request: " + e.getMessage());
+                respond(exchange, 500, List.of("Error: " + e.getMessage()));
+            } finally {
+                exchange.close();
+                Metrics.HTTP_REQUEST.stop(start);
+            }
+        }
+
+        /** Returns a member's log; unless create is set, null for members that have never logged anything. */
+        private Member member(String id, boolean create) {
+            Member member = members.get(id);
+            if (member != null || (!create && !Files.isDirectory(root.resolve(id)))) return member;
+            return members.computeIfAbsent(id, key -> new Member(root.resolve(key)));
+        }
+
+        private static Map<String, String> query(String rawQuery) {
+            Map<String, String> query = new HashMap<>();
+            if (rawQuery == null) return query;
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals <= 0) continue;
+                query.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+            }
+            return query;
+        }
+
+        private static void respond(HttpExchange exchange, int status, List<String> lines) {
+            StringBuilder body = new StringBuilder();
+            for (String line : lines) body.append(line).append('\n');
+            byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+            try {
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                exchange.sendResponseHeaders(status, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            } catch (IOException e) {
+                System.out.println("Error sending response: " + e.getMessage()); // Client went away
+            }
+        }
+
+        /** A virtual thread per request on JDKs that have them, otherwise a cached pool of platform threads. */
+        private static ExecutorService requestExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                return Executors.newCachedThreadPool();
+            }
+        }
+    }
+
+    /**
+     * Training analytics over the whole log, computed in one parallel pass: weekly and monthly volume per type
+     * (strength reps, cardio sets × duration, endurance distance), personal records per exercise, and monthly
+     * endurance pace per exercise. Rows are split into chunks that are aggregated on fork-join workers and merged.
+     * Volumes are bucketed by ISO week (Monday first) and calendar month between the first and last logged dates.
+     */
+    static final class Analytics {
+        final int firstWeek, firstMonth;
+        final long[][] weekVolume, monthVolume; // [type][bucket]
+        // Personal records: [kind][exercise id] -> row (-1 if none) and the value it set
+        static final int MOST_REPS = 0, MOST_REPS_PER_SET = 1, LONGEST_CARDIO = 2, LONGEST_DISTANCE = 3, FASTEST_PACE = 4;
+        final int[][] recordRows;
+        final double[][] recordValues;
+        // Endurance meters and seconds per exercise id and month, allocated for exercises that have any
+        long[][] paceMeters, paceSeconds;
+
+        private Analytics(int firstWeek, int weeks, int firstMonth, int months, int exercises) {
+            this.firstWeek = firstWeek;
+            this.firstMonth = firstMonth;
+            weekVolume = new long[3][weeks];
+            monthVolume = new long[3][months];
+            recordRows = new int[5][exercises];
+            for (int[] rows : recordRows) Arrays.fill(rows, -1);
+            recordValues = new double[5][exercises];
+            paceMeters = new long[exercises][];
+            paceSeconds = new long[exercises][];
+        }
+
+        /** Analyzes every row of a store (which must not change meanwhile), or returns null if it is empty. */
+        static Analytics compute(LogStore store) {
+            RowIndex dates = store.dateIndex();
+            if (dates.size() == 0) return null;
+            int fromDay = store.day(dates.row(0)), toDay = store.day(dates.last(1)[0]);
+            int firstWeek = weekOf(fromDay), firstMonth = Parse.epochMonth(fromDay);
+            int weeks = weekOf(toDay) - firstWeek + 1, months = Parse.epochMonth(toDay) - firstMonth + 1;
+            int exercises = store.names().exerciseCount();
+
+            int chunk = Math.max(ANALYTICS_CHUNK_ROWS, store.size() / (ForkJoinPool.getCommonPoolParallelism() * 4));
+            List<Chunk> chunks = new ArrayList<>();
+            for (int from = 0; from < store.size(); from += chunk) {
+                chunks.add(new Chunk(store, from, Math.min(store.size(), from + chunk),
+                        new Analytics(firstWeek, weeks, firstMonth, months, exercises)));
+            }
+            ForkJoinTask.invokeAll(chunks);
+            Analytics total = chunks.get(0).result;
+            for (int i = 1; i < chunks.size(); i++) total.merge(store, chunks.get(i).result);
+            return total;
+        }
+
+        /** Aggregates one row range into its own Analytics. */
+        private static final class Chunk extends RecursiveAction {
+            private static final long serialVersionUID = 1L;
+
+            private final LogStore store;
+            private final int from, to;
+            final Analytics result;
+
+            Chunk(LogStore store, int from, int to, Analytics result) {
+                this.store = store;
+                this.from = from;
+                this.to = to;
+                this.result = result;
+            }
+
+            @Override
+            protected void compute() {
+                for (int row = from; row < to; row++) {
+                    if (!store.isDeleted(row)) result.add(store, row);
+                }
+            }
+        }
+
+        private void add(LogStore store, int row) {
+            int type = store.type(row), exercise = store.exerciseId(row), day = store.day(row);
+            long volume = volume(store, row);
+            weekVolume[type][weekOf(day) - firstWeek] += volume;
+            monthVolume[type][Parse.epochMonth(day) - firstMonth] += volume;
+            switch (type) {
+                case STRENGTH:
+                    offer(store, MOST_REPS, exercise, row, volume);
+                    offer(store, MOST_REPS_PER_SET, exercise, row, store.reps(row));
+                    break;
+                case CARDIO:
+                    offer(store, LONGEST_CARDIO, exercise, row, store.duration(row));
+                    break;
+                default:
+                    offer(store, LONGEST_DISTANCE, exercise, row, store.distance(row));
+                    if (store.distance(row) > 0) {
+                        offer(store, FASTEST_PACE, exercise, row, -pace(store, row)); // Negated so that higher is faster
+                        if (paceMeters[exercise] == null) {
+                            paceMeters[exercise] = new long[monthVolume[0].length];
+                            paceSeconds[exercise] = new long[monthVolume[0].length];
+                        }
+                        paceMeters[exercise][Parse.epochMonth(day) - firstMonth] += store.distance(row);
+                        paceSeconds[exercise][Parse.epochMonth(day) - firstMonth] += store.duration(row);
+                    }
+            }
+        }
+
+        private void merge(LogStore store, Analytics other) {
+            for (int type = 0; type < 3; type++) {
+                for (int i = 0; i < weekVolume[type].length; i++) weekVolume[type][i] += other.weekVolume[type][i];
+                for (int i = 0; i < monthVolume[type].length; i++) monthVolume[type][i] += other.monthVolume[type][i];
+            }
+            for (int e = 0; e < paceMeters.length; e++) {
+                for (int kind = 0; kind < recordRows.length; kind++) {
+                    if (other.recordRows[kind][e] >= 0) offer(store, kind, e, other.recordRows[kind][e], other.recordValues[kind][e]);
+                }
+                if (other.paceMeters[e] == null) continue;
+                if (paceMeters[e] == null) {
+                    paceMeters[e] = other.paceMeters[e];
+                    paceSeconds[e] = other.paceSeconds[e];
+                    continue;
+                }
+                for (int i = 0; i < paceMeters[e].length; i++) {
+                    paceMeters[e][i] += other.paceMeters[e][i];
+                    paceSeconds[e][i] += other.paceSeconds[e][i];
+                }
+            }
+        }
+
+        /** Volume of a row: total reps (strength), sets × duration in seconds (cardio) or meters (endurance). */
+        static long volume(LogStore store, int row) {
+            switch (store.type(row)) {
+                case STRENGTH: return (long) store.sets(row) * store.reps(row);
+                case CARDIO: return (long) store.sets(row) * store.duration(row);
+                default: return store.distance(row);
+            }
+        }
+
+        /** Seconds per kilometer of an endurance row with a distance. */
+        static double pace(LogStore store, int row) {
+            return store.duration(row) * 1000.0 / store.distance(row);
+        }
+
+        /** ISO week number counted from the week of 1970-01-01 (weeks start on Monday). */
+        static int weekOf(int day) {
+            return Math.floorDiv(day + 3, 7);
+        }
+
+        /** Epoch-day of the Monday starting a week from weekOf(). */
+        static int weekStart(int week) {
+            return week * 7 - 3;
+        }
+
+        /** Makes a row the record if its value is higher, or equal but logged earlier. */
+        private void offer(LogStore store, int kind, int exercise, int row, double value) {
+            int record = recordRows[kind][exercise];
+            if (record < 0 || value > recordValues[kind][exercise]
+                    || (value == recordValues[kind][exercise] && earlier(store, row, record))) {
+                recordRows[kind][exercise] = row;
+                recordValues[kind][exercise] = value;
+            }
+        }
+
+        private static boolean earlier(LogStore store, int a, int b) {
+            return store.day(a) != store.day(b) ? store.day(a) < store.day(b) : a < b;
+        }
+    }
+
+    /**
+     * Pre-aggregated totals of the whole history per day, week and month, broken down by exercise and type,
+     * so period summaries read one entry per bucket instead of scanning rows. Each bucket holds
+     * {entries, volume, seconds}: volume as in {@link Analytics#volume}, seconds the time trained
+     * (sets × duration for cardio, the duration for endurance). Persisted as daily buckets in a sidecar file;
+     * weeks and months are summed from those on load.
+     */
+    static final class Rollups {
+        static final int DAY = 0, WEEK = 1, MONTH = 2;
+        private static final String HEADER = "#rollups v2 ";
+
+        // Per granularity: key(bucket, exercise, type) -> {entries, volume, seconds}, so each bucket is a contiguous range
+        private final List<TreeMap<Long, long[]>> totals = List.of(new TreeMap<>(), new TreeMap<>(), new TreeMap<>());
+        // Exercise names by rollup id as first spelled, looked up case-folded; independent of the store's ids so
+        // the file stays valid on its own
+        private final List<String> exercises = new ArrayList<>();
+        private final Map<String, Integer> exerciseIds = new HashMap<>();
+        private int[] storeExercises = new int[0]; // Store exercise id -> rollup id + 1 (0 = not looked up yet)
+
+        /** Builds rollups over every live row of a store. */
+        static Rollups of(LogStore store) {
+            Rollups rollups = new Rollups();
+            for (int row = 0; row < store.size(); row++) {
+                if (store.isLive(row)) rollups.add(store, row);
+            }
+            return rollups;
+        }
+
+        /** Adds one row; all rows must come from the same store. */
+        void add(LogStore store, int row) {
+            add(store, row, 1);
+        }
+
+        /** Takes a deleted row back out of its buckets. */
+        void remove(LogStore store, int row) {
+            add(store, row, -1);
+        }
+
+        private void add(LogStore store, int row, int sign) {
+            int storeExercise = store.exerciseId(row);
+            if (storeExercise >= storeExercises.length) storeExercises = Arrays.copyOf(storeExercises, Math.max(16, storeExercise * 2 + 1));
+            if (storeExercises[storeExercise] == 0) storeExercises[storeExercise] = exercise(store.names().spelling(store.nameId(row))) + 1;
+            int type = store.type(row);
+            long seconds = type == CARDIO ? (long) store.sets(row) * store.duration(row) : type == ENDURANCE ? store.duration(row) : 0;
+            add(store.day(row), type, storeExercises[storeExercise] - 1, sign, sign * Analytics.volume(store, row), sign * seconds);
+        }
+
+        private void add(int day, int type, int exercise, long entries, long volume, long seconds) {
+            int[] buckets = {day, Analytics.weekOf(day), Parse.epochMonth(day)};
+            for (int granularity = DAY; granularity <= MONTH; granularity++) {
+                long key = key(buckets[granularity], exercise, type);
+                long[] total = totals.get(granularity).computeIfAbsent(key, k -> new long[3]);
+                total[0] += entries;
+                total[1] += volume;
+                total[2] += seconds;
+                // A bucket whose last entry was deleted disappears, as if it had never been logged
+                if (total[0] == 0) totals.get(granularity).remove(key);
+            }
+        }
+
+        private int exercise(String spelling) {
+            return exerciseIds.computeIfAbsent(spelling.toLowerCase(Locale.ROOT), folded -> {
+                exercises.add(spelling);
+                return exercises.size() - 1;
+            });
+        }
+
+        boolean isEmpty() { return totals.get(DAY).isEmpty(); }
+
+        /** Newest bucket (epoch-day, weekOf() week or epoch-month) holding entries; only valid if not empty. */
+        int latest(int granularity) { return bucketOf(totals.get(granularity).lastKey()); }
+
+        /** Totals of one bucket, keyed by key(bucket, exercise, type). */
+        SortedMap<Long, long[]> bucket(int granularity, int bucket) {
+            return totals.get(granularity).subMap(key(bucket, 0, 0), key(bucket + 1, 0, 0));
+        }
+
+        /** Name of an exercise id from exerciseOf(), as it was first spelled. */
+        String spelling(int exercise) { return exercises.get(exercise); }
+
+        static long key(int bucket, int exercise, int type) {
+            return (long) bucket << 32 | (long) exercise << 2 | type;
+        }
+
+        static int bucketOf(long key) { return (int) (key >> 32); }
+
+        static int exerciseOf(long key) { return (int) key >>> 2; }
+
+        static int typeOf(long key) { return (int) key & 3; }
+
+        /**
+         * Writes the daily buckets under a temporary name and renames it over the file.
+         * @param fingerprint Identifies the log files these totals were computed from
+         */
+        void save(Path file, String fingerprint) throws IOException {
+            Path temp = Path.of(file + ".tmp");
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER + fingerprint);
+                writer.newLine();
+                for (String name : exercises) {
+                    writer.write("exercise " + name);
+                    writer.newLine();
+                }
+                for (Map.Entry<Long, long[]> total : totals.get(DAY).entrySet()) {
+                    long key = total.getKey();
+                    long[] value = total.getValue();
+                    writer.write(bucketOf(key) + " " + typeOf(key) + " " + exerciseOf(key) + " " + value[0] + " " + value[1] + " " + value[2]);
+                    writer.newLine();
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        /**
+         * Reads rollups saved for the given log files.
+         * @param fingerprint Current fingerprint of the log files
+         * @return The rollups, or null if the file is missing, unreadable or was saved for other log contents
+         */
+        static Rollups load(Path file, String fingerprint) {
+            if (!Files.exists(file)) return null;
+            Rollups rollups = new Rollups();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                if (!(HEADER + fingerprint).equals(reader.readLine())) return null;
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith("exercise ")) {
+                        rollups.exercise(line.substring(9));
+                        continue;
+                    }
+                    String[] fields = line.split(" ");
+                    if (fields.length != 6) return null;
+                    int type = Integer.parseInt(fields[1]), exercise = Integer.parseInt(fields[2]);
+                    if (type < STRENGTH || type > ENDURANCE || exercise >= rollups.exercises.size()) return null;
+                    rollups.add(Integer.parseInt(fields[0]), type, exercise,
+                            Long.parseLong(fields[3]), Long.parseLong(fields[4]), Long.parseLong(fields[5]));
+                }
+            } catch (IOException | RuntimeException e) {
+                return null;
+            }
+            return rollups;
+        }
+    }
+
+    /**
+     * External merge sort of log.txt lines by date in memory bounded by a buffer size. Added lines are collected
+     * until the buffer is full, sorted and spilled to a run file; finish() then merges the runs k ways (in several
+     * passes if there are more than MERGE_FAN_IN) into one date-ordered stream, dropping exact duplicate lines.
+     * Lines must be as written by toCSV(), so that their last ten characters are an ISO date, or such a line behind
+     * "delete;": a tombstone, which takes every copy of its record out of the merged log and is dropped itself.
+     */
+    static final class LogMerge {
+        // Date first, then the record, so equal lines end up next to each other with a tombstone just before them
+        static final Comparator<String> BY_DATE = (a, b) -> {
+            for (int i = 10; i > 0; i--) {
+                int c = a.charAt(a.length() - i) - b.charAt(b.length() - i);
+                if (c != 0) return c;
+            }
+            int aFrom = a.startsWith(TOMBSTONE_PREFIX) ? TOMBSTONE_PREFIX.length() : 0;
+            int bFrom = b.startsWith(TOMBSTONE_PREFIX) ? TOMBSTONE_PREFIX.length() : 0;
+            for (int i = aFrom, j = bFrom; i < a.length() && j < b.length(); i++, j++) {
+                if (a.charAt(i) != b.charAt(j)) return a.charAt(i) - b.charAt(j);
+            }
+            int c = (a.length() - aFrom) - (b.length() - bFrom);
+            return c != 0 ? c : bFrom - aFrom;
+        };
+
+        private final long bufferBytes;
+        private final Path runDir;
+        private final List<Path> runs = new ArrayList<>();
+        private String[] lines = new String[1024];
+        private int count;
+        private long buffered; // Estimated heap held by lines[0, count)
+        private long duplicates, deleted;
+        private String written, cancelled; // Last line of the final output, and record of the last tombstone seen
+
+        /**
+         * @param bufferBytes Heap to fill with lines before spilling a run
+         * @param runDir Directory for run files; runs are deleted once merged
+         */
+        LogMerge(long bufferBytes, Path runDir) {
+            this.bufferBytes = bufferBytes;
+            this.runDir = runDir;
+        }
+
+        void add(String line) throws IOException {
+            if (count == lines.length) lines = Arrays.copyOf(lines, count * 2);
+            lines[count++] = line;
+            buffered += 64 + 2L * line.length(); // UTF-16 upper bound plus object headers and the array slot
+            if (buffered >= bufferBytes) spill();
+        }
+
+        /** Exact duplicates dropped so far. */
+        long duplicates() { return duplicates; }
+
+        /** Records dropped because a tombstone deleted them. */
+        long deleted() { return deleted; }
+
+        /**
+         * Writes every added line, ordered by date and without duplicates.
+         * @return Number of lines written
+         */
+        long finish(BufferedWriter out) throws IOException {
+            if (runs.isEmpty()) { // Everything fit in the buffer
+                Arrays.sort(lines, 0, count, BY_DATE);
+                long written = 0;
+                for (int i = 0; i < count; i++) {
+                    if (emit(lines[i], out)) written++;
+                }
+                return written;
+            }
+            if (count > 0) spill();
+            lines = null;
+            while (runs.size() > MERGE_FAN_IN) {
+                List<Path> pass = new ArrayList<>(runs.subList(0, MERGE_FAN_IN));
+                runs.subList(0, MERGE_FAN_IN).clear();
+                Path run = Files.createTempFile(runDir, "run", ".txt");
+                try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+                    merge(pass, writer, false);
+                }
+                runs.add(run);
+            }
+            long written = merge(runs, out, true);
+            runs.clear();
+            return written;
+        }
+
+        private void spill() throws IOException {
+            Arrays.sort(lines, 0, count, BY_DATE);
+            Path run = Files.createTempFile(runDir, "run", ".txt");
+            try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+                String last = null;
+                for (int i = 0; i < count; i++) {
+                    if (lines[i].equals(last)) {
+                        duplicates++;
+                        continue;
+                    }
+                    writer.write(last = lines[i]);
+                    writer.newLine();
+                }
+            }
+            runs.add(run);
+            Arrays.fill(lines, 0, count, null);
+            count = 0;
+            buffered = 0;
+        }
+
+        /** Writes a line of the final output unless it repeats the last one, is a tombstone or was deleted by one. */
+        private boolean emit(String line, BufferedWriter out) throws IOException {
+            if (line.startsWith(TOMBSTONE_PREFIX)) {
+                cancelled = line.substring(TOMBSTONE_PREFIX.length());
+                return false;
+            }
+            if (line.equals(cancelled)) {
+                deleted++;
+                return false;
+            }
+            if (line.equals(written)) {
+                duplicates++;
+                return false;
+            }
+            out.write(written = line);
+            out.newLine();
+            return true;
+        }
+
+        /**
+         * Merges sorted run files into out, then deletes them; readers share the buffer between them.
+         * @param last True for the final output, where tombstones are applied; earlier passes keep them
+         */
+        private long merge(List<Path> inputs, BufferedWriter out, boolean last) throws IOException {
+            int readerChars = (int) Math.max(1 << 12, Math.min(1 << 20, bufferBytes / 2 / (inputs.size() + 1)));
+            // Readers ordered by their current line; a reader is dropped once it is exhausted
+            PriorityQueue<Head> heads = new PriorityQueue<>(inputs.size(), (a, b) -> BY_DATE.compare(a.line, b.line));
+            long written = 0;
+            try {
+                for (Path input : inputs) {
+                    Head head = new Head(new BufferedReader(new InputStreamReader(Files.newInputStream(input), StandardCharsets.UTF_8), readerChars));
+                    if (head.advance()) heads.add(head);
+                }
+                String previous = null;
+                while (!heads.isEmpty()) {
+                    Head head = heads.poll();
+                    if (last) {
+                        if (emit(head.line, out)) written++;
+                    } else if (head.line.equals(previous)) {
+                        duplicates++;
+                    } else {
+                        out.write(previous = head.line);
+                        out.newLine();
+                        written++;
+                    }
+                    if (head.advance()) heads.add(head);
+                }
+            } finally {
+                for (Head head : heads) head.reader.close();
+            }
+            for (Path input : inputs) Files.deleteIfExists(input);
+            return written;
+        }
+
+        private static final class Head {
+            final BufferedReader reader;
+            String line;
+
+            Head(BufferedReader reader) { this.reader = reader; }
+
+            /** Reads the next line, closing the reader at the end. */
+            boolean advance() throws IOException {
+                line = reader.readLine();
+                if (line == null) reader.close();
+                return line != null;
+            }
+        }
+    }
+
+    // Columnar store holding all exercise entries
+    static final LogStore log = new LogStore();
+    // File to store logs; the fitness.log system property can point it elsewhere (e.g., for benchmarks)
+    static final String LOG_FILE = System.getProperty("fitness.log", "log.txt");
+    // Sidecar file listing the name dictionary, one spelling per line in id order
+    static final String NAMES_FILE = LOG_FILE + ".names";
+    // Number of dictionary names already in NAMES_FILE, or -1 if it must be rewritten
+    static int namesSaved = 0;
+    // Write-ahead journal for new entries, opened (after recovery) by loadLog()
+    static Journal journal;
+    // Thread persisting new entries into the journal, started by the first add
+    static BackgroundWriter writer;
+    // Lines of log.txt (journaled ones included), and how many of them are deleted records or their tombstones
+    static long logLines, deadLines;
+    // Watches log.txt for lines other processes append while the menus are open; null outside the interactive UI
+    static LogWatcher watcher;
+    // Directory of month segments holding history older than the hot window
+    static final String SEGMENT_DIR = Path.of(LOG_FILE).resolveSibling("log.d").toString();
+    // Months (the current one included) whose entries stay in log.txt and are always loaded
+    static final int HOT_MONTHS = 2;
+    // Archived month segments, opened (after recovery) by loadLog(); null if they could not be opened
+    static Segments segments;
+    // Bloom filter over the fingerprints of archived entries, kept in the segment directory
+    static final String ARCHIVE_BLOOM_FILE = Path.of(SEGMENT_DIR, "fingerprints.bloom").toString();
+    // Filter over archived entries; null until read or rebuilt by archivedFingerprints()
+    static Bloom archivedBloom;
+    // Shortest log.txt line, used to size a rebuilt filter from the segments' byte count
+    static final int MIN_LINE_BYTES = 24;
+    // What adds and imports do with entries identical to logged ones (fitness.duplicates: skip, warn or allow)
+    static final DuplicatePolicy DUPLICATES = DuplicatePolicy.fromProperty();
+
+    // Sidecar file holding the daily rollups of the whole history
+    static final String ROLLUPS_FILE = LOG_FILE + ".rollups";
+    // Rollups of the whole history, archived months included; null until read by loadLog() or rebuilt by rollups()
+    static Rollups rollups;
+    // Periods shown on the Totals screen
+    static final int TOTALS_PERIODS = 8;
+
+    // Default port of the --serve HTTP server
+    static final int DEFAULT_PORT = 8080;
+
+    // Periods shown on the Analytics screen, and the window of its weekly rolling average
+    static final int ANALYTICS_MONTHS = 6, ANALYTICS_WEEKS = 8, ROLLING_WEEKS = 4;
+    // Minimum rows per parallel analytics chunk
+    static final int ANALYTICS_CHUNK_ROWS = 1 << 16;
+
+    // Minimum size of one parallel parse chunk; small logs are parsed as a single chunk
+    static final int LOAD_CHUNK_BYTES = 1 << 20;
+
+    /**
+     * A line of log.txt that could not be parsed, with its 1-based line number within a chunk or file.
+     */
+    record LoadError(int line, String message) {}
+
+    /**
+     * The fields that identify a record exactly (type without the tombstone flag, name spelling, both numbers and
+     * date); what a tombstone cancels, and the key it is matched on.
+     */
+    record Tombstone(int type, String name, int first, int second, int day) {
+        /**
+         * Finds the earliest live record of the store from row from on that this tombstone cancels.
+         * @return The row, or -1 if there is none
+         */
+        int find(LogStore store, int from) {
+            int exercise = store.names().findExercise(name);
+            if (exercise < 0) return -1;
+            for (int row : store.between(exercise, day, day)) {
+                if (row >= from && store.type(row) == type && store.first(row) == first && store.second(row) == second
+                        && store.name(row).equals(name)) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * Parses one CSV line into a log entry.
+     * @param line CSV line (e.g., "strength;Push-ups;3;10;2025-05-18")
+     * @return Parsed entry
+     * @throws IllegalArgumentException if the line is malformed or has an unknown type
+     */
+    static LogEntry parseLine(String line) {
+        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        CsvRecord record = new CsvRecord();
+        if (!record.parse(bytes, 0, bytes.limit())) throw new IllegalArgumentException(record.error);
+        if (record.tombstone) throw new IllegalArgumentException("tombstone, not an entry");
+        return record.toEntry();
+    }
+
+    /**
+     * A newline-aligned byte range of log.txt, memory-mapped and parsed on a fork-join worker.
+     */
+    static class LogChunk extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final FileChannel channel;
+        final long start, end;
+        final LogStore rows;
+        final List<LoadError> errors = new ArrayList<>();
+        int lines; // Lines seen in this chunk, used to offset line numbers of later chunks
+
+        LogChunk(FileChannel channel, long start, long end, NameDictionary names) {
+            this.channel = channel;
+            this.rows = new LogStore(new NameDictionary(names), false);
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            MappedByteBuffer buffer;
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            } catch (IOException e) {
+                errors.add(new LoadError(1, "could not map chunk: " + e.getMessage()));
+                return;
+            }
+            lines = parseLines(buffer, rows, errors);
+        }
+
+        /**
+         * Parses the CSV lines of a buffer into a store, collecting the lines that do not parse.
+         * @return Number of lines seen
+         */
+        static int parseLines(ByteBuffer buffer, LogStore rows, List<LoadError> errors) {
+            CsvRecord record = new CsvRecord();
+            int limit = buffer.limit(), lineStart = 0, lines = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buffer.get(lineEnd) != '\n') lineEnd++;
+                lines++;
+                int contentEnd = lineEnd;
+                if (contentEnd > lineStart && buffer.get(contentEnd - 1) == '\r') contentEnd--;
+                if (!isBlank(buffer, lineStart, contentEnd)) {
+                    if (record.parse(buffer, lineStart, contentEnd)) rows.add(record);
+                    else errors.add(new LoadError(lines, record.error));
+                }
+                lineStart = lineEnd + 1;
+            }
+            return lines;
+        }
+    }
+
+    /** Returns true if the byte range holds only whitespace (like String.trim().isEmpty()). */
+    static boolean isBlank(ByteBuffer buffer, int from, int to) {
+        for (int i = from; i < to; i++) if ((buffer.get(i) & 0xFF) > ' ') return false;
+        return true;
+    }
+
+    /**
+     * Splits a log file into chunks that each end right after a newline (or at end of file).
+     * @param channel Open channel on the log file
+     * @param from Offset to start at (the start of a line)
+     * @param size File size in bytes
+     * @param names Dictionary that chunks resolve known names against (must not change while they run)
+     * @return Chunks in file order
+     */
+    static List<LogChunk> splitChunks(FileChannel channel, long from, long size, NameDictionary names) throws IOException {
+        long target = Math.max(LOAD_CHUNK_BYTES, (size - from) / (ForkJoinPool.getCommonPoolParallelism() * 4L));
+        target = Math.min(target, Integer.MAX_VALUE - 8192); // A single mapping is limited to 2 GB
+        List<LogChunk> chunks = new ArrayList<>();
+        ByteBuffer probe = ByteBuffer.allocate(8192);
+        long start = from;
+        while (start < size) {
+            long end = start + target;
+            if (end >= size) {
+                end = size;
+            } else {
+                // Move the boundary forward to just past the next newline
+                boolean found = false;
+                while (!found && end < size) {
+                    probe.clear();
+                    int read = channel.read(probe, end);
+                    if (read <= 0) { end = size; break; }
+                    for (int i = 0; i < read; i++) {
+                        if (probe.get(i) == '\n') { end += i + 1; found = true; break; }
+                    }
+                    if (!found) end += read;
+                }
+            }
+            chunks.add(new LogChunk(channel, start, end, names));
+            start = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * Loads exercise entries from log.txt into the log store.
+     * Entries left in the journal by a crash are replayed into log.txt first. Entries older than the hot window
+     * are then moved into month segments under log.d, which are parsed only when a screen needs those months.
+     * The file is memory-mapped and parsed in parallel chunks; results are merged in file order.
+     * Malformed lines are reported with their line number and skipped.
+     */
+    static void loadLog() {
+        long start = System.nanoTime();
+        loadNames();
+        try {
+            segments = Segments.open(Path.of(SEGMENT_DIR), Path.of(LOG_FILE));
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error opening log segments: " + e.getMessage());
+        }
+        try {
+            journal();
+        } catch (IOException e) {
+            System.out.println("Error opening journal: " + e.getMessage());
+        }
+        // Checked before archiving, which moves entries between files without changing the totals
+        rollups = Rollups.load(Path.of(ROLLUPS_FILE), logFingerprint());
+        logLines = deadLines = 0;
+        File file = new File(LOG_FILE);
+        if (file.exists()) {
+            LogStore head = new LogStore(new NameDictionary(log.names()), false);
+            // Rewriting log.txt would drop lines that did not parse, so those block archiving until fixed
+            boolean clean = parseLogFile(file, head) == 0;
+            applyTombstones(head);
+            logLines = head.size();
+            deadLines = head.deletedCount();
+            int cutoff = (int) LocalDate.now().withDayOfMonth(1).minusMonths(HOT_MONTHS - 1).toEpochDay();
+            int keepFrom = clean && archive(head, cutoff) ? cutoff : Integer.MIN_VALUE;
+            // Register archived names too, so ids (and the progress screen's order) follow first appearance
+            NameDictionary names = head.names();
+            for (int id = log.names().size(); id < names.size(); id++) log.intern(names.spelling(id));
+            log.addAll(head, row -> head.isLive(row) && head.day(row) >= keepFrom);
+            // What is left are tombstones of archived entries
+            for (int row = 0; row < head.size(); row++) {
+                if (head.isTombstone(row) && !head.isDeleted(row) && segments != null) segments.deleteWhenLoaded(head.tombstone(row));
+            }
+            maybeCompact();
+        }
+        saveNames();
+        Metrics.LOAD_LOG.stop(start);
+    }
+
+    /**
+     * Starts watching log.txt for lines other processes append, for the interactive UI.
+     */
+    static void watchLog() {
+        try {
+            watcher = LogWatcher.start(Path.of(LOG_FILE));
+        } catch (IOException | UnsupportedOperationException e) {
+            System.out.println("Error watching log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Brings the log up to date with log.txt if the watcher saw it change: lines other processes appended since it
+     * was last read are parsed and added on their own, without re-reading the history. Only if log.txt was truncated
+     * or rewritten is it reloaded in full. Costs a flag check when nothing changed.
+     * @return True if the log was reloaded in full, so row numbers held by the caller are no longer valid
+     */
+    static boolean refreshLog() {
+        if (watcher == null || !watcher.takeChanged()) return false;
+        byte[] appended;
+        try {
+            appended = journal().takeAppended();
+        } catch (IOException e) {
+            System.out.println("Error reading log: " + e.getMessage());
+            return false;
+        }
+        if (appended == null) {
+            reloadLog();
+            return true;
+        }
+        if (appended.length > 0) addAppended(appended);
+        return false;
+    }
+
+    /**
+     * Adds lines appended to log.txt by another process to the log, its rollups and the compaction counts.
+     * Tombstones among them cancel a matching appended record first, then one already in the log or archived.
+     */
+    static void addAppended(byte[] lines) {
+        LogStore tail = new LogStore(new NameDictionary(log.names()), false);
+        List<LoadError> errors = new ArrayList<>();
+        int count = LogChunk.parseLines(ByteBuffer.wrap(lines), tail, errors);
+        for (LoadError error : errors) System.out.println("Skipping malformed line appended to " + LOG_FILE + ": " + error.message());
+        Metrics.entriesParsed.add(tail.size());
+        Metrics.parseFailures.add(errors.size());
+        applyTombstones(tail);
+        logLines += count;
+        deadLines += tail.deletedCount();
+        int from = log.size();
+        log.addAll(tail, tail::isLive);
+        if (rollups != null) {
+            for (int row = from; row < log.size(); row++) rollups.add(log, row);
+        }
+        for (int row = 0; row < tail.size(); row++) {
+            if (!tail.isTombstone(row) || tail.isDeleted(row)) continue;
+            Tombstone tombstone = tail.tombstone(row);
+            int target = tombstone.find(log, 0);
+            if (target >= 0) {
+                log.delete(target);
+                if (rollups != null) rollups.remove(log, target);
+                if (segments == null || !segments.holds(target)) deadLines += 2;
+            } else if (segments != null) {
+                segments.deleteWhenLoaded(tombstone);
+            }
+        }
+        saveNames();
+        maybeCompact();
+    }
+
+    /**
+     * Reloads the whole log after another process truncated or replaced log.txt, keeping entries added in this
+     * session that were not written yet (they are appended to the new file first).
+     */
+    static void reloadLog() {
+        System.out.println(LOG_FILE + " was replaced; reloading it.");
+        flushWrites();
+        try {
+            journal().rebase();
+        } catch (IOException e) {
+            System.out.println("Error reading log: " + e.getMessage());
+        }
+        log.clear();
+        rollups = null;
+        archivedBloom = null;
+        loadLog();
+    }
+
+    /**
+     * Takes one count of a record's canonical CSV out of a multiset of tombstones.
+     * @return True if a tombstone cancelled the record
+     */
+    static boolean cancelOne(Map<String, Integer> cancels, String csv) {
+        Integer count = cancels.get(csv);
+        if (count == null) return false;
+        if (count == 1) cancels.remove(csv);
+        else cancels.put(csv, count - 1);
+        return true;
+    }
+
+    /**
+     * Pairs each tombstone row of a freshly parsed scratch store with the earliest identical record (in file order)
+     * and deletes both, so every "delete;" line cancels exactly one record. Tombstones left over match nothing in
+     * the store and stay live. Linear in the store size: records are only looked up on days that have a tombstone.
+     */
+    static void applyTombstones(LogStore store) {
+        Map<Tombstone, ArrayDeque<Integer>> pending = new HashMap<>();
+        Set<Integer> days = new HashSet<>();
+        for (int row = 0; row < store.size(); row++) {
+            if (!store.isTombstone(row)) continue;
+            pending.computeIfAbsent(store.tombstone(row), t -> new ArrayDeque<>()).add(row);
+            days.add(store.day(row));
+        }
+        if (pending.isEmpty()) return;
+        for (int row = 0; row < store.size(); row++) {
+            if (store.isTombstone(row) || !days.contains(store.day(row))) continue;
+            ArrayDeque<Integer> tombstones = pending.get(store.tombstone(row));
+            if (tombstones == null || tombstones.isEmpty()) continue;
+            store.delete(tombstones.poll());
+            store.delete(row);
+        }
+    }
+
+    /**
+     * Identifies the current contents of log.txt and the month segments, to tell whether saved rollups still match.
+     */
+    static String logFingerprint() {
+        File file = new File(LOG_FILE);
+        return (file.exists() ? file.length() + " " + file.lastModified() : "-") + " " + (segments == null ? "-" : segments.fingerprint());
+    }
+
+    /**
+     * Returns the rollups of the whole history, rebuilding them from every segment if the saved ones did not match.
+     */
+    static Rollups rollups() {
+        if (rollups == null) {
+            loadSegments(Integer.MIN_VALUE, Integer.MAX_VALUE);
+            rollups = Rollups.of(log);
+        }
+        return rollups;
+    }
+
+    /**
+     * Saves the rollups next to log.txt, if they are up to date; called once log.txt is in its final state.
+     */
+    static void saveRollups() {
+        if (rollups == null) return;
+        try {
+            rollups.save(Path.of(ROLLUPS_FILE), logFingerprint());
+        } catch (IOException e) {
+            System.out.println("Error saving rollups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Moves entries of log.txt dated before the cutoff into their month segments and rewrites log.txt
+     * without them, committing both at once.
+     * @param head Parsed contents of log.txt
+     * @param cutoff First epoch-day that stays in log.txt
+     * @return True if log.txt now holds only entries from the cutoff on, false if nothing could be archived
+     */
+    static boolean archive(LogStore head, int cutoff) {
+        if (segments == null) return false;
+        TreeMap<Integer, StringBuilder> months = new TreeMap<>();
+        int archived = 0;
+        for (int row = 0; row < head.size(); row++) {
+            if (head.day(row) >= cutoff || !head.isLive(row)) continue;
+            StringBuilder lines = months.computeIfAbsent(Segments.monthOfDay(head.day(row)), month -> new StringBuilder());
+            head.appendCSV(row, lines);
+            lines.append('\n');
+            archived++;
+        }
+        if (archived == 0) return true;
+        Path temp = Path.of(LOG_FILE + ".tmp");
+        // Extended below rather than rebuilt, if it matches the segments before this roll
+        Bloom bloom = Bloom.load(Path.of(ARCHIVE_BLOOM_FILE), segments.fingerprint());
+        try {
+            Journal journal = journal();
+            journal.checkpoint();
+            for (Map.Entry<Integer, StringBuilder> month : months.entrySet()) {
+                segments.append(month.getKey(), month.getValue().toString().getBytes(StandardCharsets.UTF_8));
+            }
+            // Tombstones that cancelled nothing in log.txt stay, for the archived entries they delete
+            int written = writeLogFile(temp, head, row -> head.isTombstone(row) ? !head.isDeleted(row) : head.isLive(row) && head.day(row) >= cutoff);
+            Snapshot.delete(Path.of(LOG_FILE));
+            segments.commit(temp);
+            journal.reset(Files.size(Path.of(LOG_FILE)));
+            logLines = written;
+            deadLines = 0;
+        } catch (IOException e) {
+            segments.rollback();
+            System.out.println("Error archiving old entries: " + e.getMessage());
+            return false;
+        }
+        if (bloom != null) {
+            for (int row = 0; row < head.size(); row++) {
+                if (head.day(row) < cutoff && head.isLive(row)) bloom.add(head, row);
+            }
+            saveArchivedFingerprints(bloom);
+        }
+        System.out.println("Archived " + archived + " entries older than " + DISPLAY_DATE.format(LocalDate.ofEpochDay(cutoff)) + " into " + SEGMENT_DIR);
+        return true;
+    }
+
+    /**
+     * Returns the Bloom filter over archived entries, reading it or, if it is missing or stale,
+     * rebuilding it by parsing the segments one month at a time (without adding them to the log).
+     */
+    static Bloom archivedFingerprints() {
+        if (archivedBloom != null) return archivedBloom;
+        Bloom bloom = Bloom.load(Path.of(ARCHIVE_BLOOM_FILE), segments.fingerprint());
+        if (bloom == null) {
+            bloom = Bloom.forEntries(segments.bytes() / MIN_LINE_BYTES);
+            for (int month : segments.months()) {
+                LogStore archived = new LogStore(new NameDictionary(), false);
+                parseLogFile(segments.file(month).toFile(), archived);
+                for (int row = 0; row < archived.size(); row++) bloom.add(archived, row);
+            }
+            saveArchivedFingerprints(bloom);
+        }
+        return archivedBloom = bloom;
+    }
+
+    /**
+     * Saves the filter over archived entries for the current segments, or drops it to be rebuilt larger once full.
+     */
+    static void saveArchivedFingerprints(Bloom bloom) {
+        Path file = Path.of(ARCHIVE_BLOOM_FILE);
+        try {
+            if (bloom.isFull()) {
+                Files.deleteIfExists(file);
+                archivedBloom = null;
+            } else {
+                bloom.save(file, segments.fingerprint());
+                archivedBloom = bloom;
+            }
+        } catch (IOException e) {
+            System.out.println("Error saving archive fingerprints: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finds the rows of a batch that repeat an entry already in a store (for the main log, archived months
+     * included) or an earlier row of the batch. Archived months are checked through their Bloom filter and
+     * only loaded when it reports a possible match, so checks stay O(1) per row.
+     * @param target Indexed store the batch is about to be added to
+     * @param batch Scratch store of new rows
+     * @return Batch rows that are duplicates
+     */
+    static BitSet duplicates(LogStore target, LogStore batch) {
+        record Key(int type, String exercise, int first, int second, int day) {}
+        BitSet duplicates = new BitSet();
+        Set<Key> seen = new HashSet<>();
+        for (int row = 0; row < batch.size(); row++) {
+            // Batch ids may come from the target's dictionary or its own, so names are compared case-folded
+            Key key = new Key(batch.type(row), batch.name(row).toLowerCase(Locale.ROOT), batch.first(row), batch.second(row), batch.day(row));
+            if (!seen.add(key) || isLogged(target, key.type(), key.exercise(), key.first(), key.second(), key.day())) duplicates.set(row);
+        }
+        return duplicates;
+    }
+
+    /**
+     * Checks whether a store holds an entry with these fields; for the main log, loads the archived month
+     * of the day first if the Bloom filter says it might hold one.
+     * @param exercise Case-folded exercise name
+     */
+    static boolean isLogged(LogStore target, int type, String exercise, int first, int second, int day) {
+        if (target == log && segments != null && segments.holdsUnloaded(day)
+                && archivedFingerprints().mightContain(Bloom.key(type, exercise, first, second, day))) {
+            loadSegments(day, day);
+        }
+        int id = target.names().findExercise(exercise);
+        return id >= 0 && target.findIdentical(type, id, first, second, day) >= 0;
+    }
+
+    /**
+     * Makes sure every archived month overlapping fromDay..toDay (inclusive, epoch-days) is in the log store.
+     */
+    static void loadSegments(int fromDay, int toDay) {
+        if (segments != null && fromDay <= toDay) segments.ensureLoaded(log, fromDay, toDay);
+    }
+
+    /**
+     * Adds the entries of a CSV log file to a store, reporting malformed lines. Entries covered by the file's
+     * binary snapshot are taken from it; the rest of the file is memory-mapped and parsed in parallel chunks.
+     * If anything was parsed cleanly, the snapshot is rewritten to cover the whole file.
+     * @param file Log file to parse
+     * @param target Store to add the entries to
+     * @return Number of lines that were skipped or could not be read
+     */
+    static int parseLogFile(File file, LogStore target) {
+        int first = target.size();
+        Snapshot.Coverage covered = Snapshot.read(file.toPath(), target);
+        long start = covered == null ? 0 : covered.length();
+        int lineOffset = covered == null ? 0 : covered.lines(), skipped = 0;
+        long size;
+        boolean lineEnded;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            List<LogChunk> chunks = splitChunks(channel, start, size, target.names());
+            ForkJoinTask.invokeAll(chunks);
+            for (LogChunk chunk : chunks) {
+                for (LoadError error : chunk.errors) {
+                    System.out.println("Skipping malformed line " + (lineOffset + error.line()) + " in " + file + ": " + error.message());
+                }
+                target.addAll(chunk.rows);
+                lineOffset += chunk.lines;
+                skipped += chunk.errors.size();
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            lineEnded = size == 0 || (channel.read(last, size - 1) == 1 && last.get(0) == '\n');
+        } catch (IOException e) {
+            System.out.println("Error loading log: " + e.getMessage());
+            Metrics.parseFailures.increment();
+            return 1;
+        }
+        Metrics.entriesParsed.add(target.size() - first);
+        Metrics.parseFailures.add(skipped);
+        Metrics.bytesRead.add(size - start);
+        // A snapshot must end on a line boundary and must not hide malformed lines from later loads
+        if (size > start && skipped == 0 && lineEnded) {
+            try {
+                Snapshot.write(file.toPath(), size, lineOffset, target, first, target.size());
+            } catch (IOException e) {
+                System.out.println("Error writing snapshot: " + e.getMessage());
+            }
+        }
+        return skipped;
+    }
+
+    /**
+     * Seeds the name dictionary from log.txt.names so ids stay stable and known names resolve without decoding.
+     */
+    static void loadNames() {
+        File file = new File(NAMES_FILE);
+        if (!file.exists()) return;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
+            String line;
+            int lines = 0;
+            while ((line = reader.readLine()) != null) {
+                log.intern(line);
+                lines++;
+            }
+            // Duplicate lines mean the file no longer lists ids in order; rewrite it on the next save
+            namesSaved = lines == log.names().size() ? lines : -1;
+        } catch (IOException e) {
+            System.out.println("Error loading names: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Persists names added since the last save to log.txt.names, appending when possible.
+     */
+    static void saveNames() {
+        NameDictionary names = log.names();
+        if (namesSaved == names.size()) return;
+        boolean rewrite = namesSaved < 0 || namesSaved > names.size();
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(NAMES_FILE, !rewrite), StandardCharsets.UTF_8))) {
+            for (int id = rewrite ? 0 : namesSaved; id < names.size(); id++) {
+                writer.write(names.spelling(id));
+                writer.newLine();
+            }
+            namesSaved = names.size();
+        } catch (IOException e) {
+            System.out.println("Error saving names: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds an entry to the in-memory log and appends it to log.txt.
+     * @param entry Entry to add
+     */
+    static String addEntry(LogEntry entry) {
+        long start = System.nanoTime();
+        boolean duplicate = false;
+        if (DUPLICATES != DuplicatePolicy.ALLOW) {
+            LogStore probe = new LogStore(new NameDictionary(log.names()), false);
+            probe.add(entry);
+            duplicate = !duplicates(log, probe).isEmpty();
+        }
+        if (!duplicate || DUPLICATES != DuplicatePolicy.SKIP) {
+            BackgroundWriter out;
+            try {
+                out = writer(); // Nothing is added unless it can be persisted
+            } catch (IOException e) {
+                return "⚠️ Error saving log: " + e.getMessage() + " (not added).";
+            }
+            int row = log.add(entry);
+            appendRows(out, row, row + 1);
+            saveNames();
+        }
+        (entry instanceof StrengthEntry ? Metrics.ADD_STRENGTH : entry instanceof CardioEntry ? Metrics.ADD_CARDIO : Metrics.ADD_ENDURANCE).stop(start);
+        if (!duplicate) return "✅ Exercise added!";
+        return DUPLICATES == DuplicatePolicy.SKIP ? "⚠️ Already logged, not added." : "✅ Exercise added (an identical entry was already logged).";
+    }
+
+    /**
+     * Returns the month segments, or fails if loadLog() could not open them; without them the archived
+     * history is unknown, so nothing that covers the whole history may proceed.
+     */
+    static Segments openedSegments() throws IOException {
+        if (segments == null) throw new IOException("the month segments in " + SEGMENT_DIR + " could not be opened");
+        return segments;
+    }
+
+    /**
+     * Returns the journal, recovering and opening it on first use.
+     */
+    static synchronized Journal journal() throws IOException {
+        if (journal == null) journal = Journal.open(Path.of(LOG_FILE));
+        return journal;
+    }
+
+    /**
+     * Returns the background writer, starting it on first use.
+     */
+    static synchronized BackgroundWriter writer() throws IOException {
+        if (writer == null) writer = new BackgroundWriter(journal());
+        return writer;
+    }
+
+    /**
+     * Hands rows [from, to) of the log to the background writer and returns without waiting for the disk.
+     * The writer persists them with one journal write, merged with whatever else is pending, made durable per
+     * the configured policy; the journal is folded into log.txt once it grows large, so history is never rewritten.
+     * Callers obtain the writer before adding the rows, so a journal that cannot be opened leaves the log unchanged.
+     * @param out Background writer, from writer()
+     * @param from First row to persist
+     * @param to Row after the last one to persist
+     */
+    static void appendRows(BackgroundWriter out, int from, int to) {
+        if (from >= to) return;
+        if (rollups != null) {
+            for (int row = from; row < to; row++) rollups.add(log, row);
+        }
+        logLines += to - from;
+        out.submit(Journal.csvLines(log, from, to));
+    }
+
+    /**
+     * Deletes one entry of the log: the row leaves memory at once and a tombstone line is handed to the background
+     * writer, so the cost does not depend on the log size. log.txt is compacted later, off the interactive path.
+     * @param row Live row of the log
+     */
+    static String deleteEntry(int row) {
+        long start = System.nanoTime();
+        BackgroundWriter out;
+        try {
+            out = writer();
+        } catch (IOException e) {
+            return "⚠️ Error saving log: " + e.getMessage() + " (not deleted).";
+        }
+        List<String> lines = new ArrayList<>(1);
+        lines.add(tombstoneLine(row));
+        removeRow(row);
+        submitCorrection(out, lines);
+        Metrics.EDIT_ENTRY.stop(start);
+        return "🗑️ Entry deleted.";
+    }
+
+    /**
+     * Replaces one entry of the log with a corrected one: a tombstone for the old record and the new record are
+     * written together, so a crash keeps either both or neither. The duplicate policy applies as for an add.
+     * @param row Live row of the log
+     * @param entry Corrected entry
+     */
+    static String editEntry(int row, LogEntry entry) {
+        long start = System.nanoTime();
+        if (log.entry(row).toCSV().equals(entry.toCSV())) return "Nothing changed.";
+        boolean duplicate = false;
+        if (DUPLICATES != DuplicatePolicy.ALLOW) {
+            LogStore probe = new LogStore(new NameDictionary(log.names()), false);
+            probe.add(entry);
+            duplicate = !duplicates(log, probe).isEmpty();
+            if (duplicate && DUPLICATES == DuplicatePolicy.SKIP) return "⚠️ Already logged, not changed.";
+        }
+        BackgroundWriter out;
+        try {
+            out = writer();
+        } catch (IOException e) {
+            return "⚠️ Error saving log: " + e.getMessage() + " (not changed).";
+        }
+        List<String> lines = new ArrayList<>(2);
+        lines.add(tombstoneLine(row));
+        removeRow(row);
+        int added = log.add(entry);
+        if (rollups != null) rollups.add(log, added);
+        lines.add(entry.toCSV());
+        logLines++;
+        saveNames();
+        submitCorrection(out, lines);
+        Metrics.EDIT_ENTRY.stop(start);
+        return duplicate ? "✅ Entry updated (an identical entry was already logged)." : "✅ Entry updated.";
+    }
+
+    private static String tombstoneLine(int row) {
+        StringBuilder line = new StringBuilder(TOMBSTONE_PREFIX);
+        log.appendCSV(row, line);
+        return line.toString();
+    }
+
+    /** Takes a row out of the log and its rollups, and counts the lines its tombstone will make dead. */
+    private static void removeRow(int row) {
+        log.delete(row);
+        if (rollups != null) rollups.remove(log, row);
+        logLines++;
+        // An archived record stays in its segment, so only the tombstone line joins log.txt
+        if (segments == null || !segments.holds(row)) deadLines += 2;
+    }
+
+    private static void submitCorrection(BackgroundWriter out, List<String> lines) {
+        out.submit(lines);
+        maybeCompact();
+    }
+
+    /**
+     * Queues a compaction of log.txt on the background writer once deleted records and their tombstones make up
+     * COMPACTION_DEAD_PERCENT of its lines.
+     */
+    static void maybeCompact() {
+        if (deadLines == 0 || deadLines * 100 < (long) COMPACTION_DEAD_PERCENT * logLines) return;
+        try {
+            writer().compact();
+        } catch (IOException e) {
+            System.out.println("Error compacting log: " + e.getMessage());
+            return;
+        }
+        logLines -= deadLines;
+        deadLines = 0;
+    }
+
+    /**
+     * Waits until the background writer has persisted every row handed to it so far.
+     */
+    static void flushWrites() {
+        if (writer != null) writer.flush();
+    }
+
+    /**
+     * Returns a message for a write error the background writer hit since the last call, or null.
+     */
+    static String takeWriteError() {
+        IOException e = writer == null ? null : writer.takeFailure();
+        return e == null ? null : "Error saving log: " + (e.getMessage() != null ? e.getMessage() : e.toString());
+    }
+
+    /**
+     * Rewrites log.txt from the full in-memory log, dropping all month segments, so the in-memory log must
+     * hold the whole history. Only needed when history itself changes (e.g., clearing).
+     * The new file is written and forced under a temporary name, then renamed over log.txt, so a crash
+     * leaves either the old or the new history intact.
+     */
+    static void saveLog() {
+        long start = System.nanoTime();
+        Path target = Path.of(LOG_FILE), temp = Path.of(LOG_FILE + ".tmp");
+        flushWrites();
+        try {
+            Journal journal = journal();
+            journal.checkpoint();
+            logLines = writeLogFile(temp, log, log::isLive);
+            deadLines = 0;
+            Snapshot.delete(target);
+            openedSegments().removeAll(temp);
+            journal.reset(Files.size(target));
+        } catch (IOException e) {
+            System.out.println("Error saving log: " + e.getMessage());
+        }
+        namesSaved = -1;
+        saveNames();
+        Metrics.SAVE_LOG.stop(start);
+    }
+
+    /**
+     * Writes the selected rows of a store as CSV lines to a file and forces it to disk.
+     * @param file File to (over)write
+     * @param store Store to write
+     * @param keep Selects rows by row index
+     * @return Number of lines written
+     */
+    static int writeLogFile(Path file, LogStore store, IntPredicate keep) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file.toFile());
+             BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            int written = 0;
+            for (int row = 0; row < store.size(); row++) {
+                if (!keep.test(row)) continue;
+                line.setLength(0);
+                store.appendCSV(row, line);
+                writer.append(line);
+                writer.newLine();
+                written++;
+            }
+            writer.flush();
+            out.getFD().sync();
+            Metrics.entriesWritten.add(written);
+            Metrics.bytesWritten.add(out.getChannel().size());
+            return written;
+        }
+    }
+
+    /**
+     * Stops the log watcher, drains the background writer, folds the journal into log.txt, closes it and saves the rollups.
+     * Called on every exit path and from a shutdown hook.
+     */
+    static synchronized void closeLog() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                System.out.println("Error closing log watcher: " + e.getMessage());
+            }
+            watcher = null;
+        }
+        if (journal == null) return;
+        boolean failed = false;
+        if (writer != null) {
+            writer.close();
+            String error = takeWriteError();
+            if (error != null) System.out.println(error);
+            failed = writer.hasFailed();
+            writer = null;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("Error closing journal: " + e.getMessage());
+        }
+        journal = null;
+        // Rollups counting entries that never reached the files must not be reused
+        if (failed) rollups = null;
+        saveRollups();
+    }
+
+    /**
+     * Double-buffered terminal renderer for the interactive UI, installed as System.out when attached to a terminal.
+     * Printed output is collected into a frame (the screen's lines since the last clearScreen()); before the program
+     * waits for input, the frame is compared with what the terminal shows and only the changed lines are sent,
+     * with cursor moves, in one write. Lines printed after the last input when a new frame starts (results and
+     * errors) are carried onto the new frame above its prompt, so feedback stays readable without pausing.
+     * Lines wider than the terminal are placed by the rows they wrap onto, so they are diffed like any other; a frame
+     * taller than the terminal is redrawn in full and scrolls as before.
+     */
+    static final class Screen extends OutputStream {
+        private static final String ESC = "\033[";
+
+        private final PrintStream terminal;
+        private final int height, width;
+        private final ByteArrayOutputStream partial = new ByteArrayOutputStream(); // The unfinished last line
+        private List<String> frame = new ArrayList<>(), shown = new ArrayList<>(); // shown is null when unknown (scrolled)
+        private List<String> feedback = new ArrayList<>();
+        private int inputEnd, headerEnd; // Frame lines up to the last echoed input, and making up the window header
+
+        Screen(PrintStream terminal, int height, int width) {
+            this.terminal = terminal;
+            this.height = height;
+            this.width = width;
+            terminal.print(ESC + "H" + ESC + "2J");
+            terminal.flush();
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            if (b == '\n') endLine();
+            else partial.write(b);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            for (int i = off, end = off + len; i < end; i++) {
+                int lineEnd = i;
+                while (lineEnd < end && b[lineEnd] != '\n') lineEnd++;
+                partial.write(b, i, lineEnd - i);
+                if (lineEnd == end) break;
+                endLine();
+                i = lineEnd;
+            }
+        }
+
+        private void endLine() {
+            frame.add(partialLine());
+            partial.reset();
+        }
+
+        private String partialLine() {
+            String line = partial.toString(StandardCharsets.UTF_8);
+            return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        }
+
+        /** Starts a new frame, keeping what was printed since the last input as feedback for it. */
+        synchronized void clear() {
+            List<String> carried = new ArrayList<>(feedback);
+            for (String line : frame.subList(Math.max(inputEnd, headerEnd), frame.size())) {
+                if (!line.isBlank()) carried.add(line);
+            }
+            if (!partialLine().isBlank()) carried.add(partialLine());
+            feedback = new ArrayList<>(carried.subList(Math.max(0, carried.size() - FEEDBACK_LINES), carried.size()));
+            frame = new ArrayList<>();
+            partial.reset();
+            inputEnd = headerEnd = 0;
+        }
+
+        /** Marks the lines printed so far in this frame as its header (banner and title), never carried as feedback. */
+        synchronized void markHeader() {
+            headerEnd = frame.size();
+        }
+
+        /** Sends the lines that differ from the terminal's, then the unfinished last line, leaving the cursor after it. */
+        synchronized void render() {
+            if (!feedback.isEmpty()) {
+                frame.add("");
+                frame.addAll(feedback);
+                feedback.clear();
+            }
+            List<String> next = new ArrayList<>(frame);
+            next.add(partialLine());
+            StringBuilder out = new StringBuilder();
+            boolean fits = fits(next);
+            if (shown == null || !fits) {
+                out.append(ESC).append('H').append(ESC).append("2J").append(String.join("\r\n", next));
+            } else {
+                int[] rows = startRows(next), shownRows = startRows(shown);
+                for (int i = 0; i + 1 < next.size(); i++) {
+                    String line = next.get(i);
+                    // A line moved by a wrapped line above it is rewritten at its new row
+                    if (i < shown.size() && line.equals(shown.get(i)) && rows[i] == shownRows[i]) continue;
+                    out.append(ESC).append(rows[i]).append(";1H").append(line);
+                    // Erasing from the cursor of a line that fills its last row would take that row's last character
+                    if (!fillsLastRow(line)) out.append(ESC).append('K');
+                }
+                out.append(ESC).append(rows[next.size() - 1]).append(";1H").append(next.get(next.size() - 1)).append(ESC).append('J');
+            }
+            terminal.print(out);
+            terminal.flush();
+            shown = fits ? next : null;
+        }
+
+        /** Records a line the user typed, which the terminal echoed after the last line and moved below. */
+        synchronized void echo(String typed) {
+            partial.writeBytes(typed.getBytes(StandardCharsets.UTF_8));
+            endLine();
+            inputEnd = frame.size();
+            if (startRows(frame)[frame.size()] > height) {
+                shown = null;
+            } else {
+                shown = new ArrayList<>(frame);
+                shown.add("");
+            }
+        }
+
+        /** Renders what is left and moves the cursor below it. */
+        synchronized void finish() {
+            render();
+            terminal.print("\n");
+            terminal.flush();
+        }
+
+        /**
+         * Whether the terminal can show the lines without scrolling, with the cursor left after the last one; a last line
+         * filling its last row leaves the cursor waiting to wrap, where it cannot be placed again, so it is drawn in full.
+         */
+        private boolean fits(List<String> lines) {
+            return startRows(lines)[lines.size()] - 1 <= height && !fillsLastRow(lines.get(lines.size() - 1));
+        }
+
+        /** The terminal row (from 1) each line starts on, followed by the row after the last line. */
+        private int[] startRows(List<String> lines) {
+            int[] rows = new int[lines.size() + 1];
+            rows[0] = 1;
+            for (int i = 0; i < lines.size(); i++) rows[i + 1] = rows[i] + rows(lines.get(i));
+            return rows;
+        }
+
+        /** Terminal rows a line wraps onto; a wide character that does not fit in a row's last column starts the next. */
+        private int rows(String line) {
+            int rows = 1, column = 0;
+            for (int i = 0; i < line.length(); ) {
+                int c = line.codePointAt(i);
+                i += Character.charCount(c);
+                int columns = columns(c);
+                if (columns == 0) continue;
+                if (column + columns > width) {
+                    rows++;
+                    column = 0;
+                }
+                column += columns;
+            }
+            return rows;
+        }
+
+        /** Whether a line ends exactly at the last column of a row. */
+        private boolean fillsLastRow(String line) {
+            return !line.isEmpty() && rows(line + " ") > rows(line);
+        }
+
+        /** Terminal columns a character takes: wide (CJK, emoji) characters two, joiners and variation selectors none. */
+        static int columns(int c) {
+            if (c == 0x200D || (c >= 0xFE00 && c <= 0xFE0F) || Character.getType(c) == Character.NON_SPACING_MARK) return 0;
+            boolean wide = (c >= 0x1100 && c <= 0x115F) || (c >= 0x2E80 && c <= 0xA4CF) || (c >= 0xAC00 && c <= 0xD7A3)
+                    || (c >= 0xF900 && c <= 0xFAFF) || (c >= 0xFE30 && c <= 0xFE4F) || (c >= 0xFF00 && c <= 0xFF60)
+                    || (c >= 0xFFE0 && c <= 0xFFE6) || (c >= 0x1F000 && c <= 0x1FAFF) || (c >= 0x20000 && c <= 0x3FFFD);
+            return wide ? 2 : 1;
+        }
+    }
+
+    /**
+     * Clears the console screen for a clean UI; with the frame renderer, starts a new frame instead.
+     */
+    static void clearScreen() {
+        if (screen != null) {
+            screen.clear();
+            return;
+        }
+        System.out.print("\033[H\033[2J");
+        System.out.flush();
+    }
+
+    /**
+     * Routes System.out through the frame renderer if the app runs on a terminal.
+     */
+    static void installScreen() {
+        if (System.console() == null) return;
+        int[] size = terminalSize();
+        screen = new Screen(System.out, size[0], size[1]);
+        System.setOut(new PrintStream(screen, false, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Rows and columns of the terminal, asked from stty; 24 by 80 if that is not available.
+     */
+    static int[] terminalSize() {
+        try {
+            Process stty = new ProcessBuilder("sh", "-c", "stty size < /dev/tty").redirectErrorStream(true).start();
+            String size = new String(stty.getInputStream().readAllBytes(), StandardCharsets.US_ASCII).trim();
+            if (stty.waitFor() == 0 && size.matches("\\d+ \\d+")) {
+                String[] fields = size.split(" ");
+                int rows = Integer.parseInt(fields[0]), columns = Integer.parseInt(fields[1]);
+                // Some terminals report 0 0 when the size is unknown
+                if (rows > 0 && columns > 0) return new int[] {rows, columns};
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            // No stty (e.g., Windows): assume a classic terminal
+        }
+        return new int[] {24, 80};
+    }
+
+    /**
+     * Shows whatever the renderer still holds and restores the terminal; called on exit.
+     */
+    static synchronized void finishScreen() {
+        if (screen == null) return;
+        screen.finish();
+        screen = null;
+    }
+
+    /**
+     * Centers text within a given width for neat display.
+     * @param text Text to center
+     * @param width Desired width
+     * @return Centered text with padding
+     */
+    static String centerText(String text, int width) {
+        return " ".repeat(Math.max(0, (width - text.length()) / 2)) + text;
+    }
+
+    /**
+     * Appends text centered within a given width, plus a newline, without building intermediate strings.
+     * @param out Buffer to append to
+     * @param text Text to center
+     * @param width Desired width
+     */
+    static void appendCentered(StringBuilder out, String text, int width) {
+        for (int i = (width - text.length()) / 2; i > 0; i--) out.append(' ');
+        out.append(text).append('\n');
+    }
+
+    /**
+     * Prints ASCII-art header with slogan.
+     */
+    static void printAsciiArt() {
+        System.out.println(BANNER);
+    }
+
+    /**
+     * Displays a window with ASCII-art and title.
+     * @param title Window title
+     */
+    static void displayWindow(String title) {
+        clearScreen();
+        printAsciiArt();
+        System.out.println("\n" + centerText(title, 100) + "\n");
+        if (screen != null) screen.markHeader();
+    }
+
+    /**
+     * Displays the main menu with options.
+     */
+    static void displayMainMenu() {
+        clearScreen();
+        printAsciiArt();
+        if (screen != null) screen.markHeader();
+        System.out.println("\n" + centerText("1. Add exercise", 100));
+        System.out.println(centerText("2. View log", 100));
+        System.out.println(centerText("3. Show progress", 100));
+        System.out.println(centerText("4. Analytics", 100));
+        System.out.println(centerText("5. Totals", 100));
+        System.out.println(centerText("Type 'exit' to quit", 100));
+        String writeError = takeWriteError();
+        if (writeError != null) System.out.println("\n" + centerText("⚠️ " + writeError + " (recent entries may not be saved)", 100));
+        System.out.print("\n" + centerText("Select an option: ", 100));
+    }
+
+    /**
+     * Gets user input, handles 'back' command.
+     * @param prompt Prompt to display
+     * @param scanner Scanner for input
+     * @return Input string, or null if 'back'
+     */
+    static String getInput(String prompt, Scanner scanner) {
+        System.out.print(prompt);
+        if (screen != null) screen.render();
+        String line = scanner.nextLine();
+        if (screen != null) screen.echo(line);
+        String input = line.trim().toLowerCase();
+        if (input.equals("back")) return null;
+        return input;
+    }
+
+    /**
+     * Parses duration input (e.g., "2h56m45s") into seconds.
+     * @param input Duration string
+     * @return Seconds, or null if invalid
+     */
+    static Integer parseDuration(String input) {
+        long seconds = Parse.duration(input, 0, input.length());
+        return seconds == Parse.INVALID ? null : (int) seconds;
+    }
+
+    /**
+     * Parses distance input (e.g., "2km", "100m") into meters.
+     * @param input Distance string
+     * @return Meters, or null if invalid
+     */
+    static Integer parseDistance(String input) {
+        long meters = Parse.distance(input, 0, input.length());
+        return meters == Parse.INVALID ? null : (int) meters;
+    }
+
+    /**
+     * Parses date input (e.g., "18/05/2025") or returns today if empty.
+     * @param input Date string
+     * @return LocalDate, or null if invalid
+     */
+    static LocalDate parseDate(String input) {
+        if (input.trim().isEmpty()) return LocalDate.now();
+        long epochDay = Parse.dmyEpochDay(input, 0, input.length());
+        return epochDay == Parse.INVALID ? null : LocalDate.ofEpochDay(epochDay);
+    }
+
+    /**
+     * Adds a strength exercise (e.g., Push-ups).
+     * @param scanner Scanner for input
+     * @return "exit" to quit, null to return, or null on success
+     */
+    static String addStrengthExercise(Scanner scanner) {
+        displayWindow("Add Strength Exercise");
+        String name = getInput(centerText("Enter exercise name: ", 100), scanner);
+        if (name == null) return null;
+        if (name.equals("exit")) return "exit";
+
+        String setsInput = getInput(centerText("Enter number of sets: ", 100), scanner);
+        if (setsInput == null) return null;
+        if (setsInput.equals("exit")) return "exit";
+        int sets;
+        try {
+            sets = Integer.parseInt(setsInput);
+        } catch (NumberFormatException e) {
+            System.out.println(centerText("Invalid sets! Returning...", 100));
+            return null;
+        }
+
+        String repsInput = getInput(centerText("Enter reps per set: ", 100), scanner);
+        if (repsInput == null) return null;
+        if (repsInput.equals("exit")) return "exit";
+        int reps;
+        try {
+            reps = Integer.parseInt(repsInput);
+        } catch (NumberFormatException e) {
+            System.out.println(centerText("Invalid reps! Returning...", 100));
+            return null;
+        }
+
+        String dateInput = getInput(centerText("Enter date (dd/MM/yyyy, empty for today): ", 100), scanner);
+        if (dateInput == null) return null;
+        if (dateInput.equals("exit")) return "exit";
+        LocalDate date = parseDate(dateInput);
+        if (date == null) {
+            System.out.println(centerText("Invalid date! Returning...", 100));
+            return null;
+        }
+
+        System.out.println(centerText(addEntry(new StrengthEntry(name, sets, reps, date)), 100));
+        return null;
+    }
+
+    /**
+     * Adds a cardio exercise (e.g., Plank).
+     * @param scanner Scanner for input
+     * @return "exit" to quit, null to return, or null on success
+     */
+    static String addCardioExercise(Scanner scanner) {
+        displayWindow("Add Cardio Exercise");
+        String name = getInput(centerText("Enter exercise name: ", 100), scanner);
+        if (name == null) return null;
+        if (name.equals("exit")) return "exit";
+
+        String durationInput = getInput(centerText("Enter duration (e.g., 2h56m45s, 15m24s, 15m, 2h, 2h30m, 48s): ", 100), scanner);
+        if (durationInput == null) return null;
+        if (durationInput.equals("exit")) return "exit";
+        Integer duration = parseDuration(durationInput);
+        if (duration == null) {
+            System.out.println(centerText("Invalid duration! Use formats like 15m, 2h, 2h30m, 48s.", 100));
+            return null;
+        }
+
+        String setsInput = getInput(centerText("Enter number of sets: ", 100), scanner);
+        if (setsInput == null) return null;
+        if (setsInput.equals("exit")) return "exit";
+        int sets;
+        try {
+            sets = Integer.parseInt(setsInput);
+        } catch (NumberFormatException e) {
+            System.out.println(centerText("Invalid sets! Returning...", 100));
+            return null;
+        }
+
+        String dateInput = getInput(centerText("Enter date (dd/MM/yyyy, empty for today): ", 100), scanner);
+        if (dateInput == null) return null;
+        if (dateInput.equals("exit")) return "exit";
+        LocalDate date = parseDate(dateInput);
+        if (date == null) {
+            System.out.println(centerText("Invalid date! Returning...", 100));
+            return null;
+        }
+
+        System.out.println(centerText(addEntry(new CardioEntry(name, duration, sets, date)), 100));
+        return null;
+    }
+
+    /**
+     * Adds an endurance exercise (e.g., Running, Swimming).
+     * @param scanner Scanner for input
+     * @return "exit" to quit, null to return, or null on success
+     */
+    static String addEnduranceExercise(Scanner scanner) {
+        displayWindow("Add Endurance Exercise");
+        String name = getInput(centerText("Enter exercise name (e.g., Running, Swimming): ", 100), scanner);
+        if (name == null) return null;
+        if (name.equals("exit")) return "exit";
+
+        String distanceInput = getInput(centerText("Enter distance (e.g., 100m, 2km): ", 100), scanner);
+        if (distanceInput == null) return null;
+        if (distanceInput.equals("exit")) return "exit";
+        Integer distance = parseDistance(distanceInput);
+        if (distance == null) {
+            System.out.println(centerText("Invalid distance! Returning...", 100));
+            return null;
+        }
+
+        String durationInput = getInput(centerText("Enter duration (e.g., 2h56m45s, 15m24s, 15m, 2h, 2h30m, 48s): ", 100), scanner);
+        if (durationInput == null) return null;
+        if (durationInput.equals("exit")) return "exit";
+        Integer duration = parseDuration(durationInput);
+        if (duration == null) {
+            System.out.println(centerText("Invalid duration! Use formats like 15m, 2h, 2h30m, 48s.", 100));
+            return null;
+        }
+
+        String dateInput = getInput(centerText("Enter date (dd/MM/yyyy, empty for today): ", 100), scanner);
+        if (dateInput == null) return null;
+        if (dateInput.equals("exit")) return "exit";
+        LocalDate date = parseDate(dateInput);
+        if (date == null) {
+            System.out.println(centerText("Invalid date! Returning...", 100));
+            return null;
+        }
+
+        System.out.println(centerText(addEntry(new EnduranceEntry(name, distance, duration, date)), 100));
+        return null;
+    }
+
+    /**
+     * Guides user to add an exercise by selecting type.
+     * @param scanner Scanner for input
+     * @return "exit" to quit, null to return
+     */
+    static String addExercise(Scanner scanner) {
+        while (true) {
+            displayWindow("Add Exercise");
+            System.out.println(centerText("1. Strength (e.g., Push-ups)", 100));
+            System.out.println(centerText("2. Cardio (e.g., Plank)", 100));
+            System.out.println(centerText("3. Endurance (e.g., Running, Swimming)", 100));
+            System.out.println(centerText("Type 'back' to return or 'exit' to quit", 100));
+            System.out.print("\n" + centerText("Select type: ", 100));
+
+            String choice = getInput("", scanner);
             if (choice == null) return null;
             if (choice.equals("exit")) return "exit";
 
@@ -508,53 +4811,232 @@ public class FitnessLogger {
                 case "1": return addStrengthExercise(scanner);
                 case "2": return addCardioExercise(scanner);
                 case "3": return addEnduranceExercise(scanner);
-                default: System.out.println(centerText("Invalid option.", 100));
-            }
-            try {
-                Thread.sleep(1000); // 1-second delay for feedback
-            } catch (InterruptedException e) {
-                System.out.println("Error during delay: " + e.getMessage());
+                default: System.out.println(centerText("Invalid option.", 100)); // Shown on the redrawn menu
             }
         }
     }
 
     /**
-     * Clears the log file and in-memory log.
+     * Clears the log file and in-memory log.
+     */
+    static void clearLog() {
+        if (segments == null) {
+            System.out.println("Error clearing log: the month segments in " + SEGMENT_DIR + " could not be opened");
+            return;
+        }
+        log.clear();
+        saveLog();
+        rollups = Rollups.of(log);
+        saveRollups();
+        System.out.println("🗑️ Log cleared!");
+    }
+
+    /**
+     * Asks for a date range and exercise name, then narrows the pager to matching entries using the date and
+     * exercise indexes.
+     * @param scanner Scanner for input
+     * @param pager Pager to filter
+     * @return "exit" to quit, null to return to the log commands
+     */
+    static String filterLog(Scanner scanner, LogPager pager) {
+        String fromInput = getInput(centerText("From date (dd/MM/yyyy, empty for no limit): ", 100), scanner);
+        if (fromInput == null) return null;
+        if (fromInput.equals("exit")) return "exit";
+        String toInput = getInput(centerText("To date (dd/MM/yyyy, empty for no limit): ", 100), scanner);
+        if (toInput == null) return null;
+        if (toInput.equals("exit")) return "exit";
+        String name = getInput(centerText("Exercise name (empty for all): ", 100), scanner);
+        if (name == null) return null;
+        if (name.equals("exit")) return "exit";
+
+        LocalDate from = fromInput.isEmpty() ? LocalDate.MIN : parseDate(fromInput);
+        LocalDate to = toInput.isEmpty() ? LocalDate.MAX : parseDate(toInput);
+        if (from == null || to == null) {
+            pager.status = "Invalid date!";
+            return null;
+        }
+        int fromDay = (int) Math.max(Integer.MIN_VALUE, from.toEpochDay());
+        int toDay = (int) Math.min(Integer.MAX_VALUE, to.toEpochDay());
+        loadSegments(fromDay, toDay);
+        int[] rows;
+        if (name.isEmpty()) {
+            rows = log.between(fromDay, toDay);
+        } else {
+            int exercise = log.names().findExercise(name);
+            rows = exercise < 0 ? new int[0] : log.between(exercise, fromDay, toDay);
+        }
+        String label = (name.isEmpty() ? "all exercises" : name)
+                + (fromInput.isEmpty() ? "" : " from " + DISPLAY_DATE.format(from))
+                + (toInput.isEmpty() ? "" : " to " + DISPLAY_DATE.format(to));
+        pager.filter(rows, label);
+        return null;
+    }
+
+    /**
+     * Asks for the number of an entry on the current page and deletes it after a confirmation.
+     * @param scanner Scanner for input
+     * @param pager Pager showing the entry
+     * @return "exit" to quit, null to return to the log commands
+     */
+    static String deleteLogEntry(Scanner scanner, LogPager pager) {
+        String number = getInput(centerText("Entry number on this page: ", 100), scanner);
+        if (number == null) return null;
+        if (number.equals("exit")) return "exit";
+        int row = pager.rowAt(number);
+        if (row < 0) {
+            pager.status = "No entry " + number + " on this page.";
+            return null;
+        }
+        String confirm = getInput(centerText("Delete " + log.entry(row) + "? (y/n): ", 100), scanner);
+        if (confirm == null) return null;
+        if (confirm.equals("exit")) return "exit";
+        if (!confirm.equals("y") && !confirm.equals("yes")) {
+            pager.status = "Not deleted.";
+            return null;
+        }
+        pager.status = deleteEntry(row);
+        pager.removed(row);
+        return null;
+    }
+
+    /**
+     * Asks for the number of an entry on the current page, then for each of its fields with the current value
+     * shown (empty keeps it), and replaces the entry with the corrected one. Inputs use the same formats as adding.
+     * @param scanner Scanner for input
+     * @param pager Pager showing the entry
+     * @return "exit" to quit, null to return to the log commands
      */
-    static void clearLog() {
-        log.clear();
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(LOG_FILE))) {
-        } catch (IOException e) {
-            System.out.println("Error clearing log: " + e.getMessage());
+    static String editLogEntry(Scanner scanner, LogPager pager) {
+        String number = getInput(centerText("Entry number on this page: ", 100), scanner);
+        if (number == null) return null;
+        if (number.equals("exit")) return "exit";
+        int row = pager.rowAt(number);
+        if (row < 0) {
+            pager.status = "No entry " + number + " on this page.";
+            return null;
         }
-        System.out.println("🗑️ Log cleared!");
+        LogEntry entry = log.entry(row);
+        String[] prompts, current;
+        if (entry instanceof StrengthEntry strength) {
+            prompts = new String[] {"Exercise name", "Number of sets", "Reps per set", "Date"};
+            current = new String[] {strength.name, String.valueOf(strength.sets), String.valueOf(strength.reps), strength.formattedDate()};
+        } else if (entry instanceof CardioEntry cardio) {
+            prompts = new String[] {"Exercise name", "Duration", "Number of sets", "Date"};
+            current = new String[] {cardio.name, cardio.formatDuration(), String.valueOf(cardio.sets), cardio.formattedDate()};
+        } else {
+            EnduranceEntry endurance = (EnduranceEntry) entry;
+            prompts = new String[] {"Exercise name", "Distance", "Duration", "Date"};
+            current = new String[] {endurance.name, endurance.formatDistance(), endurance.formatDuration(), endurance.formattedDate()};
+        }
+        String[] inputs = new String[prompts.length];
+        for (int i = 0; i < prompts.length; i++) {
+            String input = getInput(centerText(prompts[i] + " [" + current[i] + "]: ", 100), scanner);
+            if (input == null) return null;
+            if (input.equals("exit")) return "exit";
+            inputs[i] = input;
+        }
+
+        String name = inputs[0].isEmpty() ? current[0] : inputs[0];
+        LocalDate date = inputs[3].isEmpty() ? entry.getDate() : parseDate(inputs[3]);
+        if (date == null) {
+            pager.status = "Invalid date! Entry not changed.";
+            return null;
+        }
+        LogEntry corrected;
+        int first = log.first(row), second = log.second(row);
+        switch (log.type(row)) {
+            case STRENGTH: {
+                long sets = inputs[1].isEmpty() ? first : Parse.parseInt(inputs[1], 0, inputs[1].length());
+                long reps = inputs[2].isEmpty() ? second : Parse.parseInt(inputs[2], 0, inputs[2].length());
+                if (sets == Parse.INVALID || reps == Parse.INVALID) {
+                    pager.status = "Invalid " + (sets == Parse.INVALID ? "sets" : "reps") + "! Entry not changed.";
+                    return null;
+                }
+                corrected = new StrengthEntry(name, (int) sets, (int) reps, date);
+                break;
+            }
+            case CARDIO: {
+                Integer duration = inputs[1].isEmpty() ? Integer.valueOf(first) : parseDuration(inputs[1]);
+                long sets = inputs[2].isEmpty() ? second : Parse.parseInt(inputs[2], 0, inputs[2].length());
+                if (duration == null || sets == Parse.INVALID) {
+                    pager.status = (duration == null ? "Invalid duration! Use formats like 15m, 2h, 2h30m, 48s." : "Invalid sets!") + " Entry not changed.";
+                    return null;
+                }
+                corrected = new CardioEntry(name, duration, (int) sets, date);
+                break;
+            }
+            default: {
+                Integer distance = inputs[1].isEmpty() ? Integer.valueOf(first) : parseDistance(inputs[1]);
+                Integer duration = inputs[2].isEmpty() ? Integer.valueOf(second) : parseDuration(inputs[2]);
+                if (distance == null || duration == null) {
+                    pager.status = (distance == null ? "Invalid distance!" : "Invalid duration! Use formats like 15m, 2h, 2h30m, 48s.") + " Entry not changed.";
+                    return null;
+                }
+                corrected = new EnduranceEntry(name, distance, duration, date);
+            }
+        }
+        pager.status = editEntry(row, corrected);
+        if (log.isDeleted(row)) pager.removed(row);
+        return null;
     }
 
     /**
-     * Displays all logged exercises, allows clearing.
+     * Displays logged exercises one page at a time in date order, with navigation, filtering, corrections and clearing.
      * @param scanner Scanner for input
      * @return "exit" to quit, null to return
      */
     static String viewLog(Scanner scanner) {
-        displayWindow("View Log");
-        if (log.isEmpty()) {
-            System.out.println(centerText("No exercises logged.", 100));
-        } else {
-            System.out.println(centerText("📓 Exercise Log:", 100));
-            for (LogEntry entry : log) {
-                System.out.println(centerText(" - " + entry, 100));
-            }
-        }
-        System.out.println("\n" + centerText("Type 'clear' to clear, 'back' to return, 'exit' to quit:", 100));
+        LogPager pager = new LogPager(log, segments);
+        pager.last(); // Open on the most recent entries
         while (true) {
+            if (refreshLog()) {
+                pager = new LogPager(log, segments);
+                pager.last();
+            }
+            displayWindow("View Log");
+            pager.render(System.out);
+            System.out.println("\n" + centerText("'n'/'p' next/previous page, 'date' to jump to a date, 'filter' to filter, 'all' to show all,", 100));
+            System.out.println(centerText("'edit'/'delete' to correct an entry, 'clear' to clear, 'back' to return, 'exit' to quit:", 100));
             String input = getInput(centerText("Command: ", 100), scanner);
             if (input == null) return null;
-            if (input.equals("exit")) return "exit";
-            if (input.equals("clear")) {
-                clearLog();
-                return null;
+            switch (input) {
+                case "exit":
+                    return "exit";
+                case "n":
+                case "next":
+                    if (!pager.next()) pager.status = "Already on the last page.";
+                    break;
+                case "p":
+                case "prev":
+                    if (!pager.previous()) pager.status = "Already on the first page.";
+                    break;
+                case "date": {
+                    String dateInput = getInput(centerText("Jump to date (dd/MM/yyyy): ", 100), scanner);
+                    if (dateInput == null) break;
+                    if (dateInput.equals("exit")) return "exit";
+                    LocalDate date = dateInput.isEmpty() ? null : parseDate(dateInput);
+                    if (date == null) pager.status = "Invalid date!";
+                    else pager.jumpTo((int) date.toEpochDay());
+                    break;
+                }
+                case "filter":
+                    if ("exit".equals(filterLog(scanner, pager))) return "exit";
+                    break;
+                case "all":
+                    pager.showAll();
+                    break;
+                case "edit":
+                    if ("exit".equals(editLogEntry(scanner, pager))) return "exit";
+                    break;
+                case "delete":
+                    if ("exit".equals(deleteLogEntry(scanner, pager))) return "exit";
+                    break;
+                case "clear":
+                    clearLog();
+                    return null;
+                default:
+                    pager.status = "Invalid command.";
             }
-            System.out.println(centerText("Invalid command.", 100));
         }
     }
 
@@ -564,76 +5046,284 @@ public class FitnessLogger {
      * @return "exit" to quit, null to return
      */
     static String showProgress(Scanner scanner) {
+        long start = System.nanoTime();
         displayWindow("Show Progress");
-        // Group entries by exercise name (case-insensitive)
-        Map<String, List<StrengthEntry>> strength = new HashMap<>();
-        Map<String, List<CardioEntry>> cardio = new HashMap<>();
-        Map<String, List<EnduranceEntry>> endurance = new HashMap<>();
-
-        for (LogEntry e : log) {
-            if (e instanceof StrengthEntry se) strength.computeIfAbsent(se.name.toLowerCase(), k -> new ArrayList<>()).add(se);
-            else if (e instanceof CardioEntry ce) cardio.computeIfAbsent(ce.name.toLowerCase(), k -> new ArrayList<>()).add(ce);
-            else if (e instanceof EnduranceEntry re) endurance.computeIfAbsent(re.name.toLowerCase(), k -> new ArrayList<>()).add(re);
+        loadSegments(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        System.out.println(centerText("📈 Progress Summary:", 100));
+        for (String line : progressReport(log)) System.out.println(line.isEmpty() ? line : centerText(line, 100));
+        Metrics.SHOW_PROGRESS.stop(start);
+        System.out.println("\n" + centerText("Type 'back' to return, 'exit' to quit:", 100));
+        while (true) {
+            String input = getInput(centerText("Command: ", 100), scanner);
+            if (input == null) return null;
+            if (input.equals("exit")) return "exit";
+            System.out.println(centerText("Invalid. Type 'back' or 'exit'.", 100));
         }
+    }
 
-        System.out.println(centerText("📈 Progress Summary:", 100));
-        boolean hasProgress = false;
+    /**
+     * Summarizes progress for every exercise logged at least twice, comparing its first and last entries:
+     * total reps for strength, total duration for cardio and speed for endurance.
+     * @param store Store to summarize
+     * @return Report lines (uncentered), with a blank line after each exercise
+     */
+    static List<String> progressReport(LogStore store) {
+        ProgressIndex progress = store.progress();
+        int exercises = store.names().exerciseCount();
+        List<String> lines = new ArrayList<>();
 
         // Strength progress: compare total reps
-        for (var entry : strength.entrySet()) {
-            List<StrengthEntry> entries = entry.getValue();
-            if (entries.size() < 2) continue;
-            entries.sort(Comparator.comparing(LogEntry::getDate));
-            StrengthEntry oldest = entries.get(0), latest = entries.get(entries.size() - 1);
-            int diff = latest.totalReps() - oldest.totalReps();
+        for (int exercise = 0; exercise < exercises; exercise++) {
+            if (progress.count(STRENGTH, exercise) < 2) continue;
+            int diff = (int) progress.latestMetric(STRENGTH, exercise) - (int) progress.oldestMetric(STRENGTH, exercise);
             if (diff <= 0) continue;
-            hasProgress = true;
-            System.out.println(centerText("Strength: " + latest.name, 100));
-            System.out.println(centerText("  First: " + oldest.sets + "x" + oldest.reps + " on " + oldest.formattedDate(), 100));
-            System.out.println(centerText("  Last: " + latest.sets + "x" + latest.reps + " on " + latest.formattedDate(), 100));
-            System.out.println(centerText("  Progress: +" + diff + " reps", 100));
-            System.out.println();
+            StrengthEntry oldest = (StrengthEntry) store.entry(progress.oldestRow(STRENGTH, exercise));
+            StrengthEntry latest = (StrengthEntry) store.entry(progress.latestRow(STRENGTH, exercise));
+            lines.add("Strength: " + latest.name);
+            lines.add("  First: " + oldest.sets + "x" + oldest.reps + " on " + oldest.formattedDate());
+            lines.add("  Last: " + latest.sets + "x" + latest.reps + " on " + latest.formattedDate());
+            lines.add("  Progress: +" + diff + " reps");
+            lines.add("");
         }
 
         // Cardio progress: compare total duration
-        for (var entry : cardio.entrySet()) {
-            List<CardioEntry> entries = entry.getValue();
-            if (entries.size() < 2) continue;
-            entries.sort(Comparator.comparing(LogEntry::getDate));
-            CardioEntry oldest = entries.get(0), latest = entries.get(entries.size() - 1);
-            int diff = latest.duration * latest.sets - oldest.duration * oldest.sets;
+        for (int exercise = 0; exercise < exercises; exercise++) {
+            if (progress.count(CARDIO, exercise) < 2) continue;
+            int diff = (int) progress.latestMetric(CARDIO, exercise) - (int) progress.oldestMetric(CARDIO, exercise);
             if (diff <= 0) continue;
-            hasProgress = true;
-            System.out.println(centerText("Cardio: " + latest.name, 100));
-            System.out.println(centerText("  First: " + oldest.sets + " sets of " + oldest.formatDuration() + " on " + oldest.formattedDate(), 100));
-            System.out.println(centerText("  Last: " + latest.sets + " sets of " + latest.formatDuration() + " on " + latest.formattedDate(), 100));
-            System.out.println(centerText("  Progress: +" + (diff / 60) + " min", 100));
-            System.out.println();
+            CardioEntry oldest = (CardioEntry) store.entry(progress.oldestRow(CARDIO, exercise));
+            CardioEntry latest = (CardioEntry) store.entry(progress.latestRow(CARDIO, exercise));
+            lines.add("Cardio: " + latest.name);
+            lines.add("  First: " + oldest.sets + " sets of " + oldest.formatDuration() + " on " + oldest.formattedDate());
+            lines.add("  Last: " + latest.sets + " sets of " + latest.formatDuration() + " on " + latest.formattedDate());
+            lines.add("  Progress: +" + (diff / 60) + " min");
+            lines.add("");
         }
 
         // Endurance progress: compare speed (m/min)
-        for (var entry : endurance.entrySet()) {
-            List<EnduranceEntry> entries = entry.getValue();
-            if (entries.size() < 2) continue;
-            entries.sort(Comparator.comparing(LogEntry::getDate));
-            EnduranceEntry oldest = entries.get(0), latest = entries.get(entries.size() - 1);
-            double oldestSpeed = (double) oldest.distance / (oldest.duration / 60.0); // m/min
-            double latestSpeed = (double) latest.distance / (latest.duration / 60.0); // m/min
-            double speedDiff = latestSpeed - oldestSpeed;
+        for (int exercise = 0; exercise < exercises; exercise++) {
+            if (progress.count(ENDURANCE, exercise) < 2) continue;
+            double speedDiff = progress.latestMetric(ENDURANCE, exercise) - progress.oldestMetric(ENDURANCE, exercise); // m/min
             if (speedDiff <= 0) continue;
-            hasProgress = true;
-            System.out.println(centerText("Endurance: " + latest.name, 100));
-            System.out.println(centerText("  First: " + oldest.formatDistance() + " in " + oldest.formatDuration() + " on " + oldest.formattedDate(), 100));
-            System.out.println(centerText("  Last: " + latest.formatDistance() + " in " + latest.formatDuration() + " on " + latest.formattedDate(), 100));
+            EnduranceEntry oldest = (EnduranceEntry) store.entry(progress.oldestRow(ENDURANCE, exercise));
+            EnduranceEntry latest = (EnduranceEntry) store.entry(progress.latestRow(ENDURANCE, exercise));
+            lines.add("Endurance: " + latest.name);
+            lines.add("  First: " + oldest.formatDistance() + " in " + oldest.formatDuration() + " on " + oldest.formattedDate());
+            lines.add("  Last: " + latest.formatDistance() + " in " + latest.formatDuration() + " on " + latest.formattedDate());
             if (speedDiff >= 1000) {
-                System.out.println(centerText("  Progress: +" + String.format("%.2f", speedDiff / 1000) + " km/min", 100));
+                lines.add("  Progress: +" + String.format("%.2f", speedDiff / 1000) + " km/min");
             } else {
-                System.out.println(centerText("  Progress: +" + String.format("%.2f", speedDiff) + " m/min", 100));
+                lines.add("  Progress: +" + String.format("%.2f", speedDiff) + " m/min");
+            }
+            lines.add("");
+        }
+
+        if (lines.isEmpty()) lines.add("No progress yet. Keep training!");
+        return lines;
+    }
+
+    /**
+     * Shows training analytics over the whole history: volume by month and week, personal records and pace trends.
+     * @param scanner Scanner for input
+     * @return "exit" to quit, null to return
+     */
+    static String showAnalytics(Scanner scanner) {
+        long start = System.nanoTime();
+        displayWindow("Analytics");
+        loadSegments(Integer.MIN_VALUE, Integer.MAX_VALUE);
+        for (String line : analyticsReport(log)) System.out.println(line.isEmpty() ? line : centerText(line, 100));
+        Metrics.ANALYTICS.stop(start);
+        System.out.println("\n" + centerText("Type 'back' to return, 'exit' to quit:", 100));
+        while (true) {
+            String input = getInput(centerText("Command: ", 100), scanner);
+            if (input == null) return null;
+            if (input.equals("exit")) return "exit";
+            System.out.println(centerText("Invalid. Type 'back' or 'exit'.", 100));
+        }
+    }
+
+    /**
+     * Formats analytics for a store: the last ANALYTICS_MONTHS months and ANALYTICS_WEEKS weeks of volume
+     * (weeks with a rolling average over ROLLING_WEEKS), personal records per exercise, and monthly
+     * endurance pace per exercise over the last ANALYTICS_MONTHS months.
+     * @param store Store to analyze
+     * @return Report lines (uncentered), with blank lines between sections
+     */
+    static List<String> analyticsReport(LogStore store) {
+        Analytics analytics = Analytics.compute(store);
+        if (analytics == null) return List.of("No exercises logged.");
+        List<String> lines = new ArrayList<>();
+        long[][] months = analytics.monthVolume, weeks = analytics.weekVolume;
+
+        lines.add("📅 Monthly volume");
+        lines.add(String.format("%-10s %12s %12s %12s", "Month", "Reps", "Cardio min", "Distance km"));
+        for (int i = Math.max(0, months[0].length - ANALYTICS_MONTHS); i < months[0].length; i++) {
+            lines.add(String.format("%-10s %12d %12d %12.2f", monthLabel(analytics.firstMonth + i),
+                    months[STRENGTH][i], months[CARDIO][i] / 60, months[ENDURANCE][i] / 1000.0));
+        }
+        lines.add("");
+
+        lines.add("🗓️ Weekly volume (" + ROLLING_WEEKS + "-week rolling average in brackets)");
+        lines.add(String.format("%-12s %18s %18s %18s", "Week of", "Reps", "Cardio min", "Distance km"));
+        for (int i = Math.max(0, weeks[0].length - ANALYTICS_WEEKS); i < weeks[0].length; i++) {
+            int window = Math.min(ROLLING_WEEKS, i + 1);
+            double[] average = new double[3];
+            for (int type = 0; type < 3; type++) {
+                for (int j = i - window + 1; j <= i; j++) average[type] += weeks[type][j];
+                average[type] /= window;
+            }
+            lines.add(String.format("%-12s %18s %18s %18s", DISPLAY_DATE.format(LocalDate.ofEpochDay(Analytics.weekStart(analytics.firstWeek + i))),
+                    weeks[STRENGTH][i] + " (" + Math.round(average[STRENGTH]) + ")",
+                    weeks[CARDIO][i] / 60 + " (" + Math.round(average[CARDIO] / 60) + ")",
+                    String.format("%.2f (%.2f)", weeks[ENDURANCE][i] / 1000.0, average[ENDURANCE] / 1000.0)));
+        }
+        lines.add("");
+
+        lines.add("🏆 Personal records");
+        int[][] records = analytics.recordRows;
+        for (int exercise = 0; exercise < records[0].length; exercise++) {
+            int row;
+            if ((row = records[Analytics.MOST_REPS][exercise]) >= 0) {
+                int best = records[Analytics.MOST_REPS_PER_SET][exercise];
+                lines.add(store.name(row) + ": " + Analytics.volume(store, row) + " reps in a session ("
+                        + store.sets(row) + "x" + store.reps(row) + " on " + displayDate(store, row) + "), "
+                        + store.reps(best) + " reps per set on " + displayDate(store, best));
+            }
+            if ((row = records[Analytics.LONGEST_CARDIO][exercise]) >= 0) {
+                CardioEntry longest = (CardioEntry) store.entry(row);
+                lines.add(longest.name + ": longest set " + longest.formatDuration() + " on " + longest.formattedDate());
+            }
+            if ((row = records[Analytics.LONGEST_DISTANCE][exercise]) >= 0) {
+                int fastest = records[Analytics.FASTEST_PACE][exercise];
+                lines.add(store.name(row) + ": farthest " + ((EnduranceEntry) store.entry(row)).formatDistance() + " on " + displayDate(store, row)
+                        + (fastest >= 0 ? ", fastest " + formatPace(Analytics.pace(store, fastest)) + " on " + displayDate(store, fastest) : ""));
+            }
+        }
+        lines.add("");
+
+        lines.add("🏃 Pace trends (min/km per month)");
+        boolean anyPace = false;
+        for (int exercise = 0; exercise < analytics.paceMeters.length; exercise++) {
+            long[] meters = analytics.paceMeters[exercise], seconds = analytics.paceSeconds[exercise];
+            if (meters == null) continue;
+            StringBuilder trend = new StringBuilder(store.names().exerciseName(exercise)).append(':');
+            double first = -1, last = -1;
+            for (int i = Math.max(0, meters.length - ANALYTICS_MONTHS); i < meters.length; i++) {
+                if (meters[i] == 0) continue;
+                double pace = seconds[i] * 1000.0 / meters[i];
+                if (first < 0) first = pace;
+                last = pace;
+                trend.append(' ').append(monthLabel(analytics.firstMonth + i)).append(' ').append(formatPace(pace));
+            }
+            if (first < 0) continue;
+            anyPace = true;
+            if (last != first) trend.append(last < first ? " (faster by " : " (slower by ").append(formatPace(Math.abs(first - last))).append(')');
+            lines.add(trend.toString());
+        }
+        if (!anyPace) lines.add("No endurance entries in the last " + ANALYTICS_MONTHS + " months.");
+        return lines;
+    }
+
+    /**
+     * Shows daily, weekly or monthly totals from the rollups, without reading individual entries.
+     * @param scanner Scanner for input
+     * @return "exit" to quit, null to return
+     */
+    static String showTotals(Scanner scanner) {
+        displayWindow("Totals");
+        System.out.println(centerText("Type 'back' to return, 'exit' to quit", 100));
+        while (true) {
+            String input = getInput(centerText("Period (day, week or month; empty for week): ", 100), scanner);
+            if (input == null) return null;
+            if (input.equals("exit")) return "exit";
+            int granularity = input.isEmpty() || input.equalsIgnoreCase("week") ? Rollups.WEEK
+                    : input.equalsIgnoreCase("day") ? Rollups.DAY : input.equalsIgnoreCase("month") ? Rollups.MONTH : -1;
+            if (granularity < 0) {
+                System.out.println(centerText("Invalid. Type day, week or month.", 100));
+                continue;
             }
-            System.out.println();
+            long start = System.nanoTime();
+            for (String line : totalsReport(rollups(), granularity, (int) LocalDate.now().toEpochDay())) {
+                System.out.println(line.isEmpty() ? line : centerText(line, 100));
+            }
+            Metrics.TOTALS.stop(start);
+        }
+    }
+
+    /**
+     * Formats the last TOTALS_PERIODS periods of rollups, up to the one holding today or the newest entry,
+     * and the newest of them by exercise.
+     * @param rollups Rollups to read
+     * @param granularity Rollups.DAY, WEEK or MONTH
+     * @param today Current epoch-day
+     * @return Report lines (uncentered), with blank lines between sections
+     */
+    static List<String> totalsReport(Rollups rollups, int granularity, int today) {
+        if (rollups.isEmpty()) return List.of("No exercises logged.");
+        int[] current = {today, Analytics.weekOf(today), Parse.epochMonth(today)};
+        int last = Math.max(current[granularity], rollups.latest(granularity));
+        List<String> lines = new ArrayList<>();
+        lines.add(new String[] {"📅 Daily totals", "🗓️ Weekly totals", "📅 Monthly totals"}[granularity]);
+        lines.add(String.format("%-12s %8s %10s %12s %12s %14s", "Period", "Entries", "Reps", "Cardio min", "Distance km", "Endurance min"));
+        for (int bucket = last - TOTALS_PERIODS + 1; bucket <= last; bucket++) {
+            long[] entries = new long[3], volume = new long[3], seconds = new long[3];
+            for (Map.Entry<Long, long[]> total : rollups.bucket(granularity, bucket).entrySet()) {
+                int type = Rollups.typeOf(total.getKey());
+                entries[type] += total.getValue()[0];
+                volume[type] += total.getValue()[1];
+                seconds[type] += total.getValue()[2];
+            }
+            lines.add(String.format("%-12s %8d %10d %12d %12.2f %14d", periodLabel(granularity, bucket), entries[0] + entries[1] + entries[2],
+                    volume[STRENGTH], seconds[CARDIO] / 60, volume[ENDURANCE] / 1000.0, seconds[ENDURANCE] / 60));
+        }
+        lines.add("");
+
+        lines.add("By exercise, " + periodLabel(granularity, last));
+        SortedMap<Long, long[]> latest = rollups.bucket(granularity, last);
+        for (Map.Entry<Long, long[]> total : latest.entrySet()) {
+            long[] value = total.getValue();
+            String name = rollups.spelling(Rollups.exerciseOf(total.getKey())), count = value[0] + (value[0] == 1 ? " entry" : " entries");
+            switch (Rollups.typeOf(total.getKey())) {
+                case STRENGTH: lines.add(name + " (strength): " + value[1] + " reps in " + count); break;
+                case CARDIO: lines.add(name + " (cardio): " + value[2] / 60 + " min in " + count); break;
+                default: lines.add(name + " (endurance): " + String.format("%.2f", value[1] / 1000.0) + " km in " + value[2] / 60 + " min over " + count);
+            }
+        }
+        if (latest.isEmpty()) lines.add("Nothing logged yet.");
+        return lines;
+    }
+
+    /** Labels a rollup bucket: its date, the date its week starts, or its month. */
+    static String periodLabel(int granularity, int bucket) {
+        switch (granularity) {
+            case Rollups.DAY: return DISPLAY_DATE.format(LocalDate.ofEpochDay(bucket));
+            case Rollups.WEEK: return DISPLAY_DATE.format(LocalDate.ofEpochDay(Analytics.weekStart(bucket)));
+            default: return monthLabel(bucket);
         }
+    }
+
+    static String monthLabel(int epochMonth) {
+        return String.format("%02d/%04d", epochMonth % 12 + 1, epochMonth / 12);
+    }
 
-        if (!hasProgress) System.out.println(centerText("No progress yet. Keep training!", 100));
+    static String displayDate(LogStore store, int row) {
+        return DISPLAY_DATE.format(LocalDate.ofEpochDay(store.day(row)));
+    }
+
+    /** Formats seconds per kilometer as m:ss. */
+    static String formatPace(double secondsPerKm) {
+        long seconds = Math.round(secondsPerKm);
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+
+    /**
+     * Shows the always-on counters and latency timers (hidden 'stats' command on the main menu).
+     * @param scanner Scanner for input
+     * @return "exit" to quit, null to return
+     */
+    static String showStats(Scanner scanner) {
+        displayWindow("Stats");
+        for (String line : Metrics.report()) System.out.println(centerText(line, 100));
         System.out.println("\n" + centerText("Type 'back' to return, 'exit' to quit:", 100));
         while (true) {
             String input = getInput(centerText("Command: ", 100), scanner);
@@ -643,13 +5333,538 @@ public class FitnessLogger {
         }
     }
 
+    /**
+     * Validates one headless-import record with the same rules as the interactive prompts and adds it to a store.
+     * Records are "type;name;a;b;date" with fields in CSV order and user-facing formats, e.g.
+     * "strength;push-ups;3;10;18/05/2025", "cardio;plank;1m30s;3;" or "endurance;running;5km;25m;" (empty date = today).
+     * @param store Store to add the record to
+     * @param line Record to import
+     * @return Null if the record was added, otherwise the reason it was rejected
+     */
+    static String importRecord(LogStore store, String line) {
+        String[] parts = line.trim().toLowerCase().split(";", -1);
+        if (parts.length < 4 || parts.length > 5) return "expected type;name;a;b;date";
+        for (int i = 0; i < parts.length; i++) parts[i] = parts[i].trim();
+        String name = parts[1];
+        if (name.isEmpty()) return "missing exercise name";
+        LocalDate date = parseDate(parts.length == 5 ? parts[4] : "");
+        if (date == null) return "invalid date (use dd/MM/yyyy)";
+        int day = (int) date.toEpochDay();
+        switch (parts[0]) {
+            case "strength": {
+                long sets = Parse.parseInt(parts[2], 0, parts[2].length());
+                long reps = Parse.parseInt(parts[3], 0, parts[3].length());
+                if (sets == Parse.INVALID) return "invalid sets";
+                if (reps == Parse.INVALID) return "invalid reps";
+                store.add(STRENGTH, store.intern(name), (int) sets, (int) reps, day);
+                return null;
+            }
+            case "cardio": {
+                Integer duration = parseDuration(parts[2]);
+                long sets = Parse.parseInt(parts[3], 0, parts[3].length());
+                if (duration == null) return "invalid duration (use formats like 15m, 2h, 2h30m, 48s)";
+                if (sets == Parse.INVALID) return "invalid sets";
+                store.add(CARDIO, store.intern(name), duration, (int) sets, day);
+                return null;
+            }
+            case "endurance": {
+                Integer distance = parseDistance(parts[2]);
+                Integer duration = parseDuration(parts[3]);
+                if (distance == null) return "invalid distance (use formats like 100m, 2km)";
+                if (duration == null) return "invalid duration (use formats like 15m, 2h, 2h30m, 48s)";
+                store.add(ENDURANCE, store.intern(name), distance, duration, day);
+                return null;
+            }
+            default:
+                return "unknown exercise type '" + parts[0] + "'";
+        }
+    }
+
+    /**
+     * What adds and imports do with an entry identical to a logged one (same type, case-folded name, both
+     * metrics and date); set with the fitness.duplicates system property.
+     */
+    enum DuplicatePolicy {
+        SKIP, WARN, ALLOW;
+
+        static DuplicatePolicy fromProperty() {
+            String setting = System.getProperty("fitness.duplicates", "skip").trim();
+            for (DuplicatePolicy policy : values()) {
+                if (policy.name().equalsIgnoreCase(setting)) return policy;
+            }
+            System.out.println("Warning: invalid fitness.duplicates '" + setting + "' (use skip, warn or allow); skipping duplicates");
+            return SKIP;
+        }
+    }
+
+    /**
+     * Record formats of import and export files, picked from the file name; a further ".gz" means gzip on top.
+     */
+    enum RecordFormat {
+        RECORDS, // Menu-style records (the default for import, and for stdin)
+        CSV,     // ".csv": log.txt lines
+        NDJSON;  // ".ndjson" or ".jsonl": one JSON object per line, as written by toJSON()
+
+        static RecordFormat of(String file) {
+            String name = gzipped(file) ? file.substring(0, file.length() - 3) : file;
+            name = name.toLowerCase(Locale.ROOT);
+            return name.endsWith(".ndjson") || name.endsWith(".jsonl") ? NDJSON : name.endsWith(".csv") ? CSV : RECORDS;
+        }
+
+        static boolean gzipped(String file) {
+            return file.toLowerCase(Locale.ROOT).endsWith(".gz");
+        }
+    }
+
+    /** Opens a UTF-8 text file for reading, gunzipping it if its name ends in .gz. */
+    static BufferedReader openText(Path file) throws IOException {
+        InputStream in = Files.newInputStream(file);
+        try {
+            return new BufferedReader(new InputStreamReader(RecordFormat.gzipped(file.toString())
+                    ? new GZIPInputStream(in, 1 << 16) : in, StandardCharsets.UTF_8), 1 << 16);
+        } catch (IOException e) { // Not in gzip format
+            in.close();
+            throw e;
+        }
+    }
+
+    /** Creates (or truncates) a UTF-8 text file for writing, gzipping it if asked. */
+    static BufferedWriter createText(Path file, boolean gzip) throws IOException {
+        OutputStream out = Files.newOutputStream(file);
+        try {
+            return new BufferedWriter(new OutputStreamWriter(gzip ? new GZIPOutputStream(out, 1 << 16) : out, StandardCharsets.UTF_8), 1 << 16);
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Headless batch mode: streams records from a file (or stdin for "-"), adds the valid ones in batches that are
+     * each indexed in bulk and persisted with a single write, and prints a summary. No menus, screen clearing or delays.
+     * Only one batch is buffered, so memory beyond the log itself stays constant however large the input is.
+     * If reading fails part way (e.g. a truncated .gz), the records read before the error are still added.
+     * @param source Path of the records file (format per {@link RecordFormat}, gunzipped if it ends in .gz), or "-" for stdin
+     * @return Whether the whole source was read and persisted
+     */
+    static boolean runImport(String source) {
+        BackgroundWriter out;
+        try {
+            out = writer(); // Nothing is read unless the records can be persisted
+        } catch (IOException e) {
+            System.out.println("Error opening journal: " + e.getMessage());
+            return false;
+        }
+        RecordFormat format = source.equals("-") ? RecordFormat.RECORDS : RecordFormat.of(source);
+        int accepted = 0, rejected = 0, duplicates = 0, lineNumber = 0;
+        boolean complete = true;
+        LogStore batch = new LogStore(new NameDictionary(log.names()), false);
+        try (BufferedReader reader = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : openText(Path.of(source))) {
+            CsvRecord record = new CsvRecord();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank() || line.startsWith("#")) continue;
+                String error;
+                switch (format) {
+                    case CSV: error = importCSV(batch, record, line); break;
+                    case NDJSON: error = importJSON(batch, record, line); break;
+                    default: error = importRecord(batch, line);
+                }
+                if (error == null) {
+                    accepted++;
+                } else {
+                    Metrics.parseFailures.increment();
+                    if (++rejected <= MAX_REPORTED_REJECTS) System.out.println("Rejected line " + lineNumber + ": " + error);
+                }
+                if (batch.size() >= IMPORT_BATCH_SIZE) {
+                    duplicates += addBatch(out, batch);
+                    batch = new LogStore(new NameDictionary(log.names()), false);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error reading " + source + " after line " + lineNumber + ": " + e.getMessage());
+            complete = false;
+        }
+        // Added after a read error too, so every record counted as accepted has been persisted
+        duplicates += addBatch(out, batch);
+        flushWrites();
+        String writeError = takeWriteError();
+        if (writeError != null) System.out.println(writeError);
+        if (rejected > MAX_REPORTED_REJECTS) System.out.println("... " + (rejected - MAX_REPORTED_REJECTS) + " more rejected lines not shown");
+        String summary = complete ? "Import finished: " : "Import stopped early: ";
+        if (duplicates > 0 && DUPLICATES == DuplicatePolicy.SKIP) {
+            System.out.println(summary + (accepted - duplicates) + " accepted, " + rejected + " rejected, " + duplicates + " duplicates skipped.");
+        } else if (duplicates > 0) {
+            System.out.println(summary + accepted + " accepted (" + duplicates + " duplicating logged entries), " + rejected + " rejected.");
+        } else {
+            System.out.println(summary + accepted + " accepted, " + rejected + " rejected.");
+        }
+        return complete && writeError == null;
+    }
+
+    /**
+     * Adds a batch of imported rows to the log through the bulk path and persists them with one journal write.
+     * @return Number of rows repeating logged entries (left out or added, per DUPLICATES)
+     */
+    static int addBatch(BackgroundWriter out, LogStore batch) {
+        BitSet duplicates = DUPLICATES == DuplicatePolicy.ALLOW ? new BitSet() : duplicates(log, batch);
+        int from = log.size();
+        log.addAll(batch, row -> DUPLICATES != DuplicatePolicy.SKIP || !duplicates.get(row));
+        appendRows(out, from, log.size());
+        saveNames();
+        return duplicates.cardinality();
+    }
+
+    /**
+     * Adds one log.txt line, parsed exactly as when loading the log.
+     * @return Null on success, or the reason the line was rejected
+     */
+    static String importCSV(LogStore store, CsvRecord record, String line) {
+        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+        if (!record.parse(bytes, 0, bytes.limit())) return record.error;
+        if (record.tombstone) return "deletion markers cannot be imported";
+        store.add(record);
+        return null;
+    }
+
+    /**
+     * Adds one NDJSON object as written by toJSON(): its fields are put in CSV order and parsed like a log.txt line.
+     * @return Null on success, or the reason the line was rejected
+     */
+    static String importJSON(LogStore store, CsvRecord record, String line) {
+        Map<String, String> fields;
+        try {
+            fields = parseJsonObject(line);
+        } catch (IllegalArgumentException e) {
+            return "invalid JSON: " + e.getMessage();
+        }
+        String type = fields.getOrDefault("type", ""), name = fields.get("name");
+        String[] metrics;
+        switch (type) {
+            case "strength": metrics = new String[] {"sets", "reps"}; break;
+            case "cardio": metrics = new String[] {"duration", "sets"}; break;
+            case "endurance": metrics = new String[] {"distance", "duration"}; break;
+            default: return "unknown exercise type '" + type + "'";
+        }
+        if (name == null || name.isEmpty()) return "missing exercise name";
+        if (name.indexOf(';') >= 0 || name.indexOf('\n') >= 0) return "exercise name cannot contain ';' or line breaks";
+        StringBuilder csv = new StringBuilder(type).append(';').append(name);
+        for (String key : new String[] {metrics[0], metrics[1], "date"}) {
+            String value = fields.get(key);
+            if (value == null) return "missing \"" + key + "\"";
+            csv.append(';').append(value);
+        }
+        return importCSV(store, record, csv.toString());
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings or numbers.
+     * @return Values by key, strings unescaped and numbers as written
+     * @throws IllegalArgumentException if the text is not such an object
+     */
+    static Map<String, String> parseJsonObject(String text) {
+        Map<String, String> fields = new HashMap<>();
+        int[] at = {0};
+        expect(text, at, '{');
+        at[0] = skipSpace(text, at[0]);
+        if (at[0] < text.length() && text.charAt(at[0]) == '}') {
+            at[0]++;
+        } else {
+            while (true) {
+                String key = jsonString(text, at);
+                expect(text, at, ':');
+                at[0] = skipSpace(text, at[0]);
+                if (at[0] < text.length() && text.charAt(at[0]) == '"') {
+                    fields.put(key, jsonString(text, at));
+                } else {
+                    int start = at[0];
+                    while (at[0] < text.length() && "+-.0123456789eE".indexOf(text.charAt(at[0])) >= 0) at[0]++;
+                    if (start == at[0]) throw new IllegalArgumentException("expected a string or number at " + start);
+                    fields.put(key, text.substring(start, at[0]));
+                }
+                at[0] = skipSpace(text, at[0]);
+                if (at[0] < text.length() && text.charAt(at[0]) == ',') {
+                    at[0]++;
+                    continue;
+                }
+                expect(text, at, '}');
+                break;
+            }
+        }
+        if (skipSpace(text, at[0]) != text.length()) throw new IllegalArgumentException("unexpected text after the object");
+        return fields;
+    }
+
+    private static void expect(String text, int[] at, char c) {
+        at[0] = skipSpace(text, at[0]);
+        if (at[0] >= text.length() || text.charAt(at[0]) != c) throw new IllegalArgumentException("expected '" + c + "' at " + at[0]);
+        at[0]++;
+    }
+
+    private static int skipSpace(String text, int at) {
+        while (at < text.length() && Character.isWhitespace(text.charAt(at))) at++;
+        return at;
+    }
+
+    /** Reads the JSON string starting at at[0] (after whitespace) and moves at[0] past it. */
+    private static String jsonString(String text, int[] at) {
+        expect(text, at, '"');
+        StringBuilder value = new StringBuilder();
+        while (true) {
+            if (at[0] >= text.length()) throw new IllegalArgumentException("unterminated string");
+            char c = text.charAt(at[0]++);
+            if (c == '"') return value.toString();
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (at[0] >= text.length()) throw new IllegalArgumentException("unterminated string");
+            char escaped = text.charAt(at[0]++);
+            switch (escaped) {
+                case 'b': value.append('\b'); break;
+                case 'f': value.append('\f'); break;
+                case 'n': value.append('\n'); break;
+                case 'r': value.append('\r'); break;
+                case 't': value.append('\t'); break;
+                case 'u':
+                    if (at[0] + 4 > text.length()) throw new IllegalArgumentException("bad \\u escape");
+                    try {
+                        value.append((char) Integer.parseInt(text.substring(at[0], at[0] + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("bad \\u escape");
+                    }
+                    at[0] += 4;
+                    break;
+                case '"': case '\\': case '/': value.append(escaped); break;
+                default: throw new IllegalArgumentException("bad escape \\" + escaped);
+            }
+        }
+    }
+
+    /** Quotes a string as a JSON string literal. */
+    static String jsonString(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+            else quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Headless export: streams the whole history (archived months oldest first, then log.txt) to a CSV or NDJSON
+     * file, gzipped if its name ends in .gz. Files are read line by line, so archived months are never loaded.
+     * Deleted entries are left out: the tombstones of log.txt are read first and each cancels one identical record.
+     * The file is written under a temporary name and renamed once complete.
+     * @param target Path of the export file; its name picks the format per {@link RecordFormat}
+     * @return Whether the export file was written
+     */
+    static boolean runExport(String target) {
+        RecordFormat format = RecordFormat.of(target);
+        if (format == RecordFormat.RECORDS) {
+            System.out.println("Error: export file name must end in .csv, .ndjson or .jsonl (optionally followed by .gz)");
+            return false;
+        }
+        List<Path> sources = new ArrayList<>();
+        Path temp = Path.of(target + ".tmp");
+        long exported = 0, skipped = 0;
+        flushWrites();
+        try {
+            Segments archive = openedSegments();
+            for (int month : archive.months()) sources.add(archive.file(month));
+            sources.add(Path.of(LOG_FILE));
+            journal().checkpoint();
+            Map<String, Integer> cancels = new HashMap<>();
+            if (Files.exists(Path.of(LOG_FILE))) {
+                try (BufferedReader reader = Files.newBufferedReader(Path.of(LOG_FILE), StandardCharsets.UTF_8)) {
+                    CsvRecord record = new CsvRecord();
+                    for (String line; (line = reader.readLine()) != null; ) {
+                        if (!line.startsWith(TOMBSTONE_PREFIX)) continue;
+                        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+                        if (record.parse(bytes, 0, bytes.limit())) cancels.merge(record.toEntry().toCSV(), 1, Integer::sum);
+                    }
+                }
+            }
+            try (BufferedWriter writer = createText(temp, RecordFormat.gzipped(target))) {
+                CsvRecord record = new CsvRecord();
+                for (Path source : sources) {
+                    if (!Files.exists(source)) continue;
+                    try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+                        String line;
+                        while ((line = reader.readLine()) != null) {
+                            if (line.isBlank()) continue;
+                            ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+                            if (!record.parse(bytes, 0, bytes.limit())) {
+                                skipped++;
+                                continue;
+                            }
+                            if (record.tombstone) continue;
+                            LogEntry entry = record.toEntry();
+                            if (!cancels.isEmpty() && cancelOne(cancels, entry.toCSV())) continue;
+                            writer.write(format == RecordFormat.CSV ? entry.toCSV() : entry.toJSON());
+                            writer.newLine();
+                            exported++;
+                        }
+                    }
+                }
+            }
+            Files.move(temp, Path.of(target), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Error exporting to " + target + ": " + e.getMessage());
+            return false;
+        }
+        Metrics.entriesWritten.add(exported);
+        if (skipped > 0) System.out.println("Skipped " + skipped + " malformed lines");
+        System.out.println("Export finished: " + exported + " entries written to " + target + ".");
+        return true;
+    }
+
+    /**
+     * Headless merge of logs kept on several devices: reads log.txt-format files (gunzipped if they end in .gz) and
+     * writes one log ordered by date, without exact duplicates, to target (gzipped if it ends in .gz). Uses an
+     * external sort, so memory stays within the fitness.merge.buffer size (e.g. 256m) however large the inputs are.
+     * Run files go to a temporary directory next to the target, and the target is written under a temporary name.
+     * @param target Path of the merged log
+     * @param sources Paths of the logs to merge
+     * @return Whether the merged log was written
+     */
+    static boolean runMerge(String target, List<String> sources) {
+        long bufferBytes = mergeBufferBytes();
+        Path output = Path.of(target).toAbsolutePath(), temp = Path.of(output + ".tmp"), runDir = null;
+        long merged;
+        int rejected = 0;
+        LogMerge merge;
+        try {
+            runDir = Files.createTempDirectory(output.getParent(), ".merge");
+            merge = new LogMerge(bufferBytes, runDir);
+            CsvRecord record = new CsvRecord();
+            for (String source : sources) {
+                try (BufferedReader reader = openText(Path.of(source))) {
+                    String line;
+                    int lineNumber = 0;
+                    while ((line = reader.readLine()) != null) {
+                        lineNumber++;
+                        if (line.isBlank()) continue;
+                        ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+                        if (!record.parse(bytes, 0, bytes.limit())) {
+                            Metrics.parseFailures.increment();
+                            if (++rejected <= MAX_REPORTED_REJECTS) System.out.println("Rejected " + source + " line " + lineNumber + ": " + record.error);
+                            continue;
+                        }
+                        merge.add(record.tombstone ? TOMBSTONE_PREFIX + record.toEntry().toCSV() : record.toEntry().toCSV());
+                    }
+                }
+            }
+            try (BufferedWriter writer = createText(temp, RecordFormat.gzipped(target))) {
+                merged = merge.finish(writer);
+            }
+            Files.move(temp, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (NoSuchFileException e) {
+            // Before the run directory exists, it is the target's directory that is missing
+            System.out.println("Error merging into " + target + ": " + (runDir == null ? output.getParent() : e.getFile()) + " not found");
+            return false;
+        } catch (IOException e) {
+            System.out.println("Error merging into " + target + ": " + e.getMessage());
+            return false;
+        } finally {
+            if (runDir != null) {
+                try (DirectoryStream<Path> runs = Files.newDirectoryStream(runDir)) { // Left over only after an error
+                    for (Path run : runs) Files.deleteIfExists(run);
+                    Files.deleteIfExists(runDir);
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    System.out.println("Error removing " + runDir + ": " + e.getMessage());
+                }
+            }
+        }
+        Metrics.entriesWritten.add(merged);
+        if (rejected > MAX_REPORTED_REJECTS) System.out.println("... " + (rejected - MAX_REPORTED_REJECTS) + " more rejected lines not shown");
+        System.out.println("Merge finished: " + merged + " entries written to " + target + ", " + merge.duplicates() + " duplicates dropped, "
+                + (merge.deleted() > 0 ? merge.deleted() + " deleted entries dropped, " : "") + rejected + " rejected.");
+        return true;
+    }
+
+    /** Buffer size for --merge from the fitness.merge.buffer property: a number of bytes with an optional k, m or g suffix. */
+    static long mergeBufferBytes() {
+        String setting = System.getProperty("fitness.merge.buffer", DEFAULT_MERGE_BUFFER_MB + "m").trim().toLowerCase(Locale.ROOT);
+        int shift = setting.endsWith("k") ? 10 : setting.endsWith("m") ? 20 : setting.endsWith("g") ? 30 : 0;
+        long value = Parse.parseInt(setting, 0, shift == 0 ? setting.length() : setting.length() - 1);
+        if (value == Parse.INVALID || value << shift < 1 << 20) {
+            System.out.println("Warning: invalid fitness.merge.buffer '" + setting + "' (use e.g. 256m, at least 1m); using " + DEFAULT_MERGE_BUFFER_MB + "m");
+            return (long) DEFAULT_MERGE_BUFFER_MB << 20;
+        }
+        return value << shift;
+    }
+
+    /**
+     * Runs the multi-member HTTP server until the process is stopped; member logs live under members/.
+     * The server has no authentication, so it only listens on the loopback interface unless the fitness.serve.address
+     * system property names another address (e.g. 0.0.0.0 for every interface).
+     * @param port Port to listen on (0 for any free port)
+     */
+    static void runServer(int port) {
+        Path root = Path.of(LOG_FILE).resolveSibling("members");
+        Server server = new Server(root);
+        String setting = System.getProperty("fitness.serve.address", "").trim();
+        try {
+            InetAddress address = setting.isEmpty() ? InetAddress.getLoopbackAddress() : InetAddress.getByName(setting);
+            server.start(address, port);
+        } catch (IOException e) {
+            System.out.println("Error starting server: " + e.getMessage());
+            return;
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+        String host = setting.isEmpty() ? "localhost" : setting;
+        System.out.println("Serving member logs from " + root + " on http://" + host + ":" + server.port() + "/members/");
+    }
+
     /**
      * Main method to run the FitnessLogger application.
-     * @param args Command-line arguments (unused)
+     * @param args Command-line arguments: none for the interactive UI, "--import [file]" for headless batch
+     *             import from a file (stdin if omitted or "-"), "--export file" for headless export,
+     *             "--merge target log..." to merge logs from several devices, or "--serve [port]" for the
+     *             multi-member HTTP server
      */
     public static void main(String[] args) {
+        Metrics.register();
+        if (args.length > 0) {
+            if (args[0].equals("--import") && args.length <= 2) {
+                loadLog();
+                boolean imported = runImport(args.length == 2 ? args[1] : "-");
+                closeLog();
+                if (!imported) System.exit(1);
+            } else if (args[0].equals("--export") && args.length == 2) {
+                loadLog();
+                boolean exported = runExport(args[1]);
+                closeLog();
+                if (!exported) System.exit(1);
+            } else if (args[0].equals("--merge") && args.length >= 3) {
+                if (!runMerge(args[1], Arrays.asList(args).subList(2, args.length))) System.exit(1);
+            } else if (args[0].equals("--serve") && args.length <= 2) {
+                long port = args.length == 2 ? Parse.parseInt(args[1], 0, args[1].length()) : DEFAULT_PORT;
+                if (port < 0 || port > 65535) {
+                    System.out.println("Invalid port: " + args[1]);
+                    return;
+                }
+                runServer((int) port);
+            } else {
+                System.out.println("Usage: java FitnessLogger [--import [file|-] | --export file | --merge target log... | --serve [port]]");
+            }
+            return;
+        }
+        installScreen();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> { // Flush the journal on Ctrl+C too
+            closeLog();
+            finishScreen();
+        }));
         Scanner scanner = new Scanner(System.in);
         loadLog(); // Load existing logs
+        watchLog(); // Pick up entries other processes append from now on
         displayMainMenu(); // Show main menu
 
         while (true) {
@@ -659,22 +5874,30 @@ public class FitnessLogger {
                 continue;
             }
             if (choice.equals("exit")) {
+                closeLog();
                 clearScreen();
                 System.out.println(centerText("💪 Stay strong, GymRat!", 100));
+                finishScreen();
                 scanner.close();
                 return;
             }
 
+            refreshLog();
             String result = null;
             switch (choice) {
                 case "1": result = addExercise(scanner); break;
                 case "2": result = viewLog(scanner); break;
                 case "3": result = showProgress(scanner); break;
+                case "4": result = showAnalytics(scanner); break;
+                case "5": result = showTotals(scanner); break;
+                case "stats": result = showStats(scanner); break;
                 default: System.out.println(centerText("Invalid option.", 100));
             }
             if (result != null && result.equals("exit")) {
+                closeLog();
                 clearScreen();
                 System.out.println(centerText("💪 Stay strong, GymRat!", 100));
+                finishScreen();
                 scanner.close();
                 return;
             }
@@ -0,0 +1,128 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Deletes and edits entries through the menu paths and checks log.txt and a restarted log. The logger's
+ * static state points at the scratch log set by the build (fitness.log), which is wiped before each test.
+ */
+class CorrectionTest {
+    private static final Path LOG = Path.of(FitnessLogger.LOG_FILE);
+    private static final LocalDate TODAY = LocalDate.now(), ARCHIVED = TODAY.minusYears(1);
+
+    @BeforeEach
+    void wipe() throws IOException {
+        reset();
+        if (Files.exists(LOG.getParent())) {
+            try (Stream<Path> files = Files.walk(LOG.getParent())) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(file);
+            }
+        }
+        Files.createDirectories(LOG.getParent());
+    }
+
+    @AfterEach
+    void close() {
+        reset();
+    }
+
+    @Test
+    void deleteSurvivesRestart() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int reps = 1; reps <= 5; reps++) lines.add("strength;squats;3;" + reps + ";" + TODAY);
+        Files.write(LOG, lines);
+        FitnessLogger.loadLog();
+        assertEquals(5, FitnessLogger.Metrics.COUNTERS.getEntriesInMemory());
+
+        assertEquals("🗑️ Entry deleted.", FitnessLogger.deleteEntry(row(lines.get(2))));
+        assertEquals(4, FitnessLogger.Metrics.COUNTERS.getEntriesInMemory());
+
+        restart();
+        assertEquals(4, FitnessLogger.Metrics.COUNTERS.getEntriesInMemory());
+        assertEquals(-1, row(lines.get(2)));
+        assertTrue(row(lines.get(3)) >= 0);
+    }
+
+    @Test
+    void editOfArchivedEntryAppendsTombstoneAndReplacement() throws IOException {
+        String archived = "strength;squats;3;10;" + ARCHIVED, hot = "cardio;plank;60;2;" + TODAY;
+        Files.write(LOG, List.of(archived, hot));
+        FitnessLogger.loadLog();
+        assertEquals(List.of(hot), Files.readAllLines(LOG));
+
+        int day = (int) ARCHIVED.toEpochDay();
+        FitnessLogger.loadSegments(day, day);
+        String fixed = "strength;squats;3;12;" + ARCHIVED;
+        assertEquals("✅ Entry updated.", FitnessLogger.editEntry(row(archived),
+                new FitnessLogger.StrengthEntry("squats", 3, 12, ARCHIVED)));
+        FitnessLogger.flushWrites();
+        FitnessLogger.closeLog();
+        assertEquals(List.of(hot, "delete;" + archived, fixed), Files.readAllLines(LOG));
+
+        restart();
+        FitnessLogger.loadSegments(day, day);
+        assertEquals(-1, row(archived));
+        assertTrue(row(fixed) >= 0);
+        assertEquals(2, FitnessLogger.Metrics.COUNTERS.getEntriesInMemory());
+    }
+
+    @Test
+    void compactionDropsPairsAndKeepsArchivedTombstones() throws IOException {
+        String archived = "endurance;running;5000;1500;" + ARCHIVED;
+        List<String> lines = new ArrayList<>(List.of(archived));
+        for (int reps = 1; reps <= 4; reps++) lines.add("strength;squats;3;" + reps + ";" + TODAY);
+        Files.write(LOG, lines);
+        FitnessLogger.loadLog();
+
+        int day = (int) ARCHIVED.toEpochDay();
+        FitnessLogger.loadSegments(day, day);
+        FitnessLogger.deleteEntry(row(archived));
+        // Two dead lines out of six: past COMPACTION_DEAD_PERCENT, so this queues a compaction
+        FitnessLogger.deleteEntry(row(lines.get(1)));
+        FitnessLogger.flushWrites();
+        FitnessLogger.closeLog();
+        assertEquals(List.of(lines.get(2), lines.get(3), lines.get(4), "delete;" + archived), Files.readAllLines(LOG));
+
+        restart();
+        FitnessLogger.loadSegments(day, day);
+        assertEquals(-1, row(archived));
+        assertEquals(-1, row(lines.get(1)));
+        assertEquals(3, FitnessLogger.Metrics.COUNTERS.getEntriesInMemory());
+    }
+
+    /** The live row holding an entry with this CSV, or -1. */
+    private static int row(String csv) {
+        for (int row = 0; row < FitnessLogger.log.size(); row++) {
+            if (FitnessLogger.log.isLive(row) && FitnessLogger.log.entry(row).toCSV().equals(csv)) return row;
+        }
+        return -1;
+    }
+
+    /** Closes the log and loads it again, as a new run of the app would. */
+    private static void restart() {
+        reset();
+        FitnessLogger.loadLog();
+    }
+
+    /** Closes the journal and forgets everything loaded, as if the app had just started. */
+    private static void reset() {
+        FitnessLogger.closeLog();
+        FitnessLogger.log.clear();
+        FitnessLogger.rollups = null;
+        FitnessLogger.archivedBloom = null;
+        FitnessLogger.namesSaved = 0;
+    }
+}
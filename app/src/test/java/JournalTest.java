@@ -0,0 +1,167 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Drives the write-ahead journal against a log.txt that another program appends to, truncates or rewrites.
+ * Journals left by a crash are written by hand in the on-disk format: a "#base=" header, then crc;csv lines.
+ */
+class JournalTest {
+    private static final String A = "strength;squats;3;10;2025-05-01", B = "cardio;plank;60;2;2025-05-02";
+
+    private Path log;
+
+    @BeforeEach
+    void create(@TempDir Path dir) {
+        log = dir.resolve("log.txt");
+    }
+
+    @Test
+    void recoversTornCheckpoint() throws IOException {
+        Files.writeString(log, "endurance;running;5000;1500;2025-04-30\n");
+        long base = Files.size(log);
+        writeJournal(base, A, B);
+        // The crash hit while the checkpoint was appending B
+        append(A + "\n" + B.substring(0, 10));
+
+        assertEquals(2, FitnessLogger.Journal.recover(log));
+        assertEquals(List.of("endurance;running;5000;1500;2025-04-30", A, B), Files.readAllLines(log));
+        assertFalse(Files.exists(Path.of(log + ".journal")));
+    }
+
+    @Test
+    void recoversTornCheckpointAfterForeignLines() throws IOException {
+        Files.writeString(log, "endurance;running;5000;1500;2025-04-30\n");
+        long base = Files.size(log);
+        writeJournal(base, A, B);
+        // Another program appended a line after the base, then the checkpoint appended A and part of B
+        append("strength;dips;3;8;2025-05-01\n" + A + "\n" + B.substring(0, 4));
+
+        assertEquals(2, FitnessLogger.Journal.recover(log));
+        assertEquals(List.of("endurance;running;5000;1500;2025-04-30", "strength;dips;3;8;2025-05-01", A, B), Files.readAllLines(log));
+    }
+
+    @Test
+    void recoversJournalNotYetCheckpointed() throws IOException {
+        Files.writeString(log, A + "\n");
+        writeJournal(Files.size(log), B);
+
+        assertEquals(1, FitnessLogger.Journal.recover(log));
+        assertEquals(List.of(A, B), Files.readAllLines(log));
+    }
+
+    @Test
+    void takesExternallyAppendedLines() throws IOException {
+        Files.writeString(log, A + "\n");
+        FitnessLogger.Journal journal = FitnessLogger.Journal.open(log);
+        try {
+            assertEquals("", taken(journal));
+            // A partly written last line waits until it is complete
+            append(B + "\n" + A.substring(0, 8));
+            assertEquals(B + "\n", taken(journal));
+            append(A.substring(8) + "\n");
+            assertEquals(A + "\n", taken(journal));
+            assertEquals("", taken(journal));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void takeAppendedReportsTruncation() throws IOException {
+        Files.writeString(log, A + "\n" + B + "\n");
+        FitnessLogger.Journal journal = FitnessLogger.Journal.open(log);
+        try {
+            Files.writeString(log, A + "\n");
+            assertNull(journal.takeAppended());
+            // Stays replaced until rebase(), even once the file grows back
+            append(B + "\n" + B + "\n");
+            assertNull(journal.takeAppended());
+            journal.rebase();
+            assertEquals("", taken(journal));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void takeAppendedReportsRewrite() throws IOException {
+        Files.writeString(log, A + "\n");
+        FitnessLogger.Journal journal = FitnessLogger.Journal.open(log);
+        try {
+            // Same length and longer, but the bytes before the base differ
+            Files.writeString(log, A.replace("squats", "lunges") + "\n" + B + "\n");
+            assertNull(journal.takeAppended());
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void checkpointKeepsForeignLinesForTakeAppended() throws IOException {
+        Files.writeString(log, A + "\n");
+        FitnessLogger.Journal journal = FitnessLogger.Journal.open(log);
+        try {
+            journal.append(List.of(B));
+            append("strength;dips;3;8;2025-05-01\n");
+            journal.checkpoint();
+            assertEquals(List.of(A, "strength;dips;3;8;2025-05-01", B), Files.readAllLines(log));
+            assertEquals("strength;dips;3;8;2025-05-01\n", taken(journal));
+        } finally {
+            journal.close();
+        }
+    }
+
+    @Test
+    void compactionDropsPairsAndKeepsLinesAppendedMeanwhile() throws IOException {
+        Files.writeString(log, A + "\n" + B + "\n" + "delete;" + A + "\n");
+        FitnessLogger.Journal journal = FitnessLogger.Journal.open(log);
+        try {
+            append("strength;dips;3;8;2025-05-01\n");
+            // A program that opened log.txt before the compaction renamed the copy over it, and writes after
+            try (FileChannel slow = FileChannel.open(log, StandardOpenOption.APPEND)) {
+                journal.compact();
+                assertEquals(List.of(B, "strength;dips;3;8;2025-05-01"), Files.readAllLines(log));
+                slow.write(ByteBuffer.wrap("strength;dips;3;9;2025-05-01\n".getBytes(StandardCharsets.UTF_8)));
+            }
+            assertEquals("strength;dips;3;8;2025-05-01\nstrength;dips;3;9;2025-05-01\n", taken(journal));
+            assertEquals(List.of(B, "strength;dips;3;8;2025-05-01", "strength;dips;3;9;2025-05-01"), Files.readAllLines(log));
+        } finally {
+            journal.close();
+        }
+    }
+
+    private static String taken(FitnessLogger.Journal journal) throws IOException {
+        return new String(journal.takeAppended(), StandardCharsets.UTF_8);
+    }
+
+    private void append(String text) throws IOException {
+        Files.writeString(log, text, StandardOpenOption.APPEND);
+    }
+
+    /** Writes log.txt.journal as a run that crashed before (or while) checkpointing would have left it. */
+    private void writeJournal(long base, String... records) throws IOException {
+        StringBuilder journal = new StringBuilder(String.format("#base=%019d\n", base));
+        CRC32 crc = new CRC32();
+        for (String record : records) {
+            crc.reset();
+            crc.update(record.getBytes(StandardCharsets.UTF_8));
+            journal.append(String.format("%08x", crc.getValue())).append(';').append(record).append('\n');
+        }
+        Files.writeString(Path.of(log + ".journal"), journal);
+    }
+}
@@ -0,0 +1,224 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the Parse kernel and CsvRecord against the String-based parsers they replaced.
+ * The Legacy methods are the original implementations, kept verbatim as the reference.
+ */
+class ParseTest {
+    private static final int SAMPLES = 200_000;
+
+    @Test
+    void durationMatchesLegacy() {
+        String[] cases = {"2h56m45s", "1m0s", "45s", "0s", "", "  ", " 2H30m ", "h", "5", "5m5", "m5s",
+                "2h-5m", "1.5h", "99999999999s", "2147483647s", "3٣s", "5m5m"};
+        for (String input : cases) assertEquals(Legacy.parseDuration(input), FitnessLogger.parseDuration(input), input);
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            String input = randomString(random, "0123456789hmsHMS x-", 8);
+            assertEquals(Legacy.parseDuration(input), FitnessLogger.parseDuration(input), input);
+        }
+    }
+
+    @Test
+    void distanceMatchesLegacy() {
+        String[] cases = {"2km", "1.5km", "100m", "250", " 3 KM ", "0.001km", ".5km", "1.km", "-2km", "+7m", "km", "m",
+                "", "1.2.3km", "0.1km", "12345678.9km", "2147483648m", "1k"};
+        for (String input : cases) assertEquals(Legacy.parseDistance(input), FitnessLogger.parseDistance(input), input);
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            String input = randomString(random, "0123456789.km KM-+", 8);
+            Integer expected = Legacy.parseDistance(input);
+            if (expected != null && repeatsUnit(input)) {
+                assertNull(FitnessLogger.parseDistance(input), input);
+            } else {
+                assertEquals(expected, FitnessLogger.parseDistance(input), input);
+            }
+        }
+    }
+
+    /** Repeated units were accepted by the old replace()-based parser and are now rejected on purpose. */
+    @Test
+    void distanceRejectsRepeatedUnits() {
+        assertEquals(55, Legacy.parseDistance("5m5m"));
+        assertNull(FitnessLogger.parseDistance("5m5m"));
+        assertEquals(5000, Legacy.parseDistance("5kmkm"));
+        assertNull(FitnessLogger.parseDistance("5kmkm"));
+        // Durations always allowed repeated units, in both parsers
+        assertEquals(600, Legacy.parseDuration("5m5m"));
+        assertEquals(600, FitnessLogger.parseDuration("5m5m"));
+    }
+
+    /** Double.parseDouble syntax beyond plain decimals (exponents, type suffixes) is now rejected on purpose. */
+    @Test
+    void distanceRejectsExponents() {
+        assertEquals(1_000_000, Legacy.parseDistance("1e3km"));
+        assertNull(FitnessLogger.parseDistance("1e3km"));
+        assertEquals(1000, Legacy.parseDistance("1dkm"));
+        assertNull(FitnessLogger.parseDistance("1dkm"));
+    }
+
+    @Test
+    void dateMatchesLegacy() {
+        String[] cases = {"18/05/2025", "29/02/2024", "29/02/2023", "31/04/2025", "32/01/2025", "00/01/2025",
+                "01/13/2025", "01/00/2025", "01/01/0000", "01/01/0001", "1/1/2025", "18-05-2025", "18/05/25", "aa/bb/cccc"};
+        for (String input : cases) assertEquals(Legacy.parseDate(input), FitnessLogger.parseDate(input), input);
+        Random random = new Random(42);
+        for (int i = 0; i < SAMPLES; i++) {
+            String input = String.format("%02d/%02d/%04d", random.nextInt(34), random.nextInt(14), random.nextInt(10_000));
+            if (random.nextInt(8) == 0) {
+                char[] chars = input.toCharArray();
+                chars[random.nextInt(chars.length)] = "0/9x-".charAt(random.nextInt(5));
+                input = new String(chars);
+            }
+            assertEquals(Legacy.parseDate(input), FitnessLogger.parseDate(input), input);
+        }
+    }
+
+    @Test
+    void csvRecordMatchesLegacy() {
+        String[] cases = {"strength;Push-ups;3;10;2025-05-18", "cardio;Plank;60;2;2025-05-18",
+                "endurance;Swimming;1000;1200;2025-05-18", "endurance;Løb;5000;1500;2024-02-29",
+                "strength;Push-ups;3;10;2025-05-18;", "strength;Push-ups;3;10;2025-05-18;;", "strength;;3;10;2025-05-18",
+                "yoga;Flow;1;2;2025-05-18", "strength;Push-ups;3;10", "strength;Push-ups;x;10;2025-05-18",
+                "strength;Push-ups;3;10;2025-02-30", "strength;Push-ups;-3;+10;2025-05-18", "Strength;Push-ups;3;10;2025-05-18"};
+        for (String line : cases) assertEquals(Legacy.fromCSV(line), parse(line), line);
+        Random random = new Random(42);
+        String[] types = {"strength", "cardio", "endurance", "Cardio", "run"};
+        String[] names = {"Push-ups", "Bench press", "Løb", ""};
+        for (int i = 0; i < SAMPLES; i++) {
+            String line = types[random.nextInt(types.length)] + ";" + names[random.nextInt(names.length)]
+                    + ";" + randomNumber(random) + ";" + randomNumber(random) + ";" + randomIsoDate(random)
+                    + ";".repeat(random.nextInt(3) == 0 ? random.nextInt(3) : 0);
+            assertEquals(Legacy.fromCSV(line), parse(line), line);
+        }
+    }
+
+    /** Fields after the date were ignored by the old split(";") loader and are now reported as errors on purpose. */
+    @Test
+    void csvRecordRejectsExtraFields() {
+        String line = "strength;Push-ups;3;10;2025-05-18;extra";
+        assertEquals("strength;Push-ups;3;10;2025-05-18", Legacy.fromCSV(line));
+        assertNull(parse(line));
+    }
+
+    @Test
+    void csvRecordReadsTombstones() {
+        FitnessLogger.CsvRecord record = new FitnessLogger.CsvRecord();
+        byte[] bytes = "delete;cardio;Plank;60;2;2025-05-18".getBytes(StandardCharsets.UTF_8);
+        assertTrue(record.parse(ByteBuffer.wrap(bytes), 0, bytes.length));
+        assertTrue(record.tombstone);
+        assertEquals("cardio;Plank;60;2;2025-05-18", record.toEntry().toCSV());
+    }
+
+    /** Parses one line with CsvRecord and renders it back, or returns null if it was rejected. */
+    private static String parse(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        FitnessLogger.CsvRecord record = new FitnessLogger.CsvRecord();
+        return record.parse(ByteBuffer.wrap(bytes), 0, bytes.length) ? record.toEntry().toCSV() : null;
+    }
+
+    private static boolean repeatsUnit(String input) {
+        String units = input.trim().toLowerCase().replaceAll("[^km]", "");
+        return units.length() > 2 || units.equals("mm") || units.equals("mk") || units.equals("kk");
+    }
+
+    private static String randomString(Random random, String alphabet, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) chars[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        return new String(chars);
+    }
+
+    private static String randomNumber(Random random) {
+        switch (random.nextInt(6)) {
+            case 0: return randomString(random, "0123456789+- x", 4);
+            case 1: return Long.toString(random.nextLong() >> random.nextInt(64));
+            default: return Integer.toString(random.nextInt(5000));
+        }
+    }
+
+    private static String randomIsoDate(Random random) {
+        String date = String.format("%04d-%02d-%02d", random.nextInt(10_000), random.nextInt(14), random.nextInt(33));
+        if (random.nextInt(8) != 0) return date;
+        char[] chars = date.toCharArray();
+        chars[random.nextInt(chars.length)] = "0-9/x".charAt(random.nextInt(5));
+        return new String(chars);
+    }
+
+    /** The original parsers, as they were before the Parse kernel. */
+    static final class Legacy {
+        static Integer parseDuration(String input) {
+            input = input.trim().toLowerCase();
+            if (input.isEmpty()) return null;
+            try {
+                int seconds = 0;
+                String currentNum = "";
+                for (int i = 0; i < input.length(); i++) {
+                    char c = input.charAt(i);
+                    if (Character.isDigit(c)) {
+                        currentNum += c;
+                    } else if (c == 'h' || c == 'm' || c == 's') {
+                        if (currentNum.isEmpty()) return null;
+                        int num = Integer.parseInt(currentNum);
+                        if (c == 'h') seconds += num * 3600;
+                        else if (c == 'm') seconds += num * 60;
+                        else if (c == 's') seconds += num;
+                        currentNum = "";
+                    } else {
+                        return null;
+                    }
+                }
+                if (!currentNum.isEmpty()) return null;
+                return seconds > 0 ? seconds : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        static Integer parseDistance(String input) {
+            input = input.trim().toLowerCase();
+            try {
+                if (input.endsWith("km")) return (int) (Double.parseDouble(input.replace("km", "")) * 1000);
+                if (input.endsWith("m")) return Integer.parseInt(input.replace("m", ""));
+                return Integer.parseInt(input);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        static LocalDate parseDate(String input) {
+            if (input.trim().isEmpty()) return LocalDate.now();
+            try {
+                return LocalDate.parse(input, DateTimeFormatter.ofPattern("dd/MM/yyyy"));
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
+        /** The old loader: split(";"), dispatch on the type, parse each field; anything that throws is rejected. */
+        static String fromCSV(String line) {
+            String[] parts = line.split(";");
+            try {
+                int a = Integer.parseInt(parts[2]), b = Integer.parseInt(parts[3]);
+                LocalDate date = LocalDate.parse(parts[4]);
+                switch (parts[0]) {
+                    case "strength": return new FitnessLogger.StrengthEntry(parts[1], a, b, date).toCSV();
+                    case "cardio": return new FitnessLogger.CardioEntry(parts[1], a, b, date).toCSV();
+                    case "endurance": return new FitnessLogger.EnduranceEntry(parts[1], a, b, date).toCSV();
+                    default: return null;
+                }
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
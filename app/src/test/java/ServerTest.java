@@ -0,0 +1,117 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs the --serve HTTP server on a free loopback port and drives it with java.net.http.HttpClient.
+ * Duplicates are checked under the default policy (fitness.duplicates=skip).
+ */
+class ServerTest {
+    private final HttpClient client = HttpClient.newHttpClient();
+    private FitnessLogger.Server server;
+    private Path root;
+
+    @BeforeEach
+    void start(@TempDir Path dir) throws IOException {
+        root = dir.resolve("members");
+        server = new FitnessLogger.Server(root);
+        server.start(0);
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop();
+    }
+
+    @Test
+    void postThenGetEntries() throws Exception {
+        HttpResponse<String> added = post("alice", "strength;Push-ups;3;10;01/05/2025\ncardio;Plank;1m30s;3;02/05/2025\n"
+                + "endurance;Running;5km;25m;03/05/2025\n");
+        assertEquals(200, added.statusCode());
+        assertEquals("Added 3 entries.\n", added.body());
+        assertTrue(Files.exists(root.resolve("alice").resolve("log.txt")));
+
+        HttpResponse<String> entries = get("alice", "entries");
+        assertEquals(200, entries.statusCode());
+        assertEquals("strength;push-ups;3;10;2025-05-01\ncardio;plank;90;3;2025-05-02\nendurance;running;5000;1500;2025-05-03\n",
+                entries.body());
+        assertEquals("cardio;plank;90;3;2025-05-02\n", get("alice", "entries?from=02/05/2025&to=02/05/2025").body());
+        assertEquals("endurance;running;5000;1500;2025-05-03\n", get("alice", "entries?limit=1").body());
+        assertEquals("strength;push-ups;3;10;2025-05-01\n", get("alice", "entries?exercise=Push-ups").body());
+        assertEquals(400, get("alice", "entries?from=2025-05-01").statusCode());
+    }
+
+    @Test
+    void getProgress() throws Exception {
+        post("bob", "strength;Squats;3;10;01/05/2025\nstrength;Squats;4;12;08/05/2025\n");
+        HttpResponse<String> progress = get("bob", "progress");
+        assertEquals(200, progress.statusCode());
+        assertTrue(progress.body().contains("Strength: squats\n"), progress.body());
+        assertTrue(progress.body().contains("  Progress: +18 reps\n"), progress.body());
+    }
+
+    @Test
+    void duplicatesAreSkipped() throws Exception {
+        assertEquals("Added 1 entries.\n", post("carol", "strength;Lunges;3;10;01/05/2025\n").body());
+        HttpResponse<String> again = post("carol", "strength;lunges;3;10;01/05/2025\nstrength;Lunges;3;11;01/05/2025\n");
+        assertEquals(200, again.statusCode());
+        assertEquals("Added 1 entries.\n1 duplicates of logged entries skipped.\n", again.body());
+        assertEquals(2, get("carol", "entries").body().lines().count());
+    }
+
+    @Test
+    void rejectsReportLineAndReason() throws Exception {
+        HttpResponse<String> partly = post("dave", "strength;Dips;3;10;01/05/2025\nyoga;Flow;1;2;\ncardio;Plank;90x;3;\n");
+        assertEquals(200, partly.statusCode());
+        assertEquals("Added 1 entries.\nRejected line 2: unknown exercise type 'yoga'\n"
+                + "Rejected line 3: invalid duration (use formats like 15m, 2h, 2h30m, 48s)\n", partly.body());
+
+        HttpResponse<String> none = post("dave", "strength;Dips;three;10;\n");
+        assertEquals(400, none.statusCode());
+        assertEquals("Added 0 entries.\nRejected line 1: invalid sets\n", none.body());
+    }
+
+    @Test
+    void rejectsBadMemberIds() throws Exception {
+        assertEquals(404, post("bad.id", "strength;Dips;3;10;01/05/2025\n").statusCode());
+        assertEquals(404, post("x".repeat(65), "strength;Dips;3;10;01/05/2025\n").statusCode());
+        assertEquals(404, get("bad.id", "entries").statusCode());
+        assertEquals(404, get("nobody", "progress").statusCode());
+        assertFalse(Files.exists(root.resolve("bad.id")));
+        assertFalse(Files.exists(root.resolve("nobody")));
+    }
+
+    @Test
+    void refusesOversizedBodies() throws Exception {
+        String line = "strength;Dips;3;10;01/05/2025\n";
+        HttpResponse<String> response = post("erin", line.repeat((8 << 20) / line.length() + 1));
+        assertEquals(413, response.statusCode());
+        assertFalse(Files.exists(root.resolve("erin")));
+    }
+
+    private HttpResponse<String> post(String member, String body) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri(member, "entries")).POST(HttpRequest.BodyPublishers.ofString(body)).build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> get(String member, String resource) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(member, resource)).GET().build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private URI uri(String member, String resource) {
+        return URI.create("http://127.0.0.1:" + server.port() + "/members/" + member + "/" + resource);
+    }
+}
@@ -0,0 +1,67 @@
+package fitnesslogger.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Handles into the logger. FitnessLogger lives in the default package with package-private members, which
+ * named packages (required by JMH) cannot reference directly, so benchmarks go through a private lookup.
+ * Loading the class reads the fitness.log property, so set it before first use.
+ */
+final class App {
+    static final Class<?> MAIN = type("FitnessLogger");
+    private static final MethodHandles.Lookup LOOKUP = lookup();
+
+    private App() {}
+
+    /** Loads FitnessLogger or one of its nested classes, e.g. "StrengthEntry". */
+    static Class<?> type(String name) {
+        try {
+            return Class.forName(name.equals("FitnessLogger") ? name : "FitnessLogger$" + name);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("FitnessLogger is not on the classpath", e);
+        }
+    }
+
+    static MethodHandle staticMethod(String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return LOOKUP.findStatic(MAIN, name, MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static MethodHandle method(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try {
+            return LOOKUP.findVirtual(owner, name, MethodType.methodType(returnType, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static MethodHandle constructor(Class<?> owner, Class<?>... parameters) {
+        try {
+            return LOOKUP.findConstructor(owner, MethodType.methodType(void.class, parameters));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static VarHandle staticField(String name, Class<?> type) {
+        try {
+            return LOOKUP.findStaticVarHandle(MAIN, name, type);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MethodHandles.Lookup lookup() {
+        try {
+            return MethodHandles.privateLookupIn(MAIN, MethodHandles.lookup());
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package fitnesslogger.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of formatting strength entries for display, as View Log does for every row on a page.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryFormatBenchmark {
+    private static final int ENTRIES = 1024; // Power of two, cycled through with a mask
+    private static final Class<?> STRENGTH = App.type("StrengthEntry");
+    private static final MethodHandle NEW_STRENGTH = App.constructor(STRENGTH, String.class, int.class, int.class, LocalDate.class)
+            .asType(MethodType.methodType(Object.class, String.class, int.class, int.class, LocalDate.class));
+    private static final MethodHandle FORMATTED_DATE = App.method(STRENGTH, "formattedDate", String.class)
+            .asType(MethodType.methodType(String.class, Object.class));
+
+    private final Object[] entries = new Object[ENTRIES];
+    private int next;
+
+    @Setup
+    public void entries() throws Throwable {
+        SplittableRandom random = new SplittableRandom(LogGenerator.SEED);
+        LocalDate start = LocalDate.of(2025, 1, 1);
+        for (int i = 0; i < ENTRIES; i++) {
+            String name = LogGenerator.NAMES[random.nextInt(LogGenerator.NAMES.length)];
+            entries[i] = NEW_STRENGTH.invokeExact(name, 1 + random.nextInt(6), 1 + random.nextInt(30), start.plusDays(random.nextInt(365)));
+        }
+    }
+
+    @Benchmark
+    public String strengthToString() {
+        return entries[next++ & (ENTRIES - 1)].toString();
+    }
+
+    @Benchmark
+    public String formattedDate() throws Throwable {
+        return (String) FORMATTED_DATE.invokeExact(entries[next++ & (ENTRIES - 1)]);
+    }
+}
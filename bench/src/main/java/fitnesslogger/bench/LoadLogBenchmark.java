@@ -0,0 +1,49 @@
+package fitnesslogger.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup cost: loadLog() on a generated log.txt. "csv" parses the text (and writes a new snapshot, as a
+ * first start after upgrading or an external edit would); "snapshot" is the usual start from a current snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class LoadLogBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int entries;
+
+    @Param({"csv", "snapshot"})
+    String source;
+
+    private LogFixture fixture;
+
+    @Setup(Level.Trial)
+    public void generate() throws Throwable {
+        fixture = LogFixture.create(entries);
+        LogFixture.load(); // Writes the snapshot and names file
+    }
+
+    @Setup(Level.Invocation)
+    public void reset() throws Throwable {
+        LogFixture.reset();
+        if (source.equals("csv")) Files.deleteIfExists(fixture.snapshot());
+    }
+
+    @Benchmark
+    public int loadLog() throws Throwable {
+        LogFixture.load();
+        return LogFixture.size();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Throwable {
+        fixture.delete();
+    }
+}
@@ -0,0 +1,72 @@
+package fitnesslogger.bench;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * A generated log.txt in a temporary directory that the logger is pointed at, plus helpers to reset the
+ * logger's static state between invocations.
+ */
+final class LogFixture {
+    private final Path dir;
+    final Path logFile;
+
+    private LogFixture(Path dir) {
+        this.dir = dir;
+        this.logFile = dir.resolve("log.txt");
+    }
+
+    /**
+     * Generates a log with the given number of entries and points the logger at it. Must run before anything
+     * touches the logger in this JVM, because the log location is fixed when the class is loaded.
+     */
+    static LogFixture create(int entries) throws IOException {
+        LogFixture fixture = new LogFixture(Files.createTempDirectory("fitness-bench"));
+        LogGenerator.write(fixture.logFile, entries);
+        System.setProperty("fitness.log", fixture.logFile.toString());
+        return fixture;
+    }
+
+    /** Closes the journal and empties the in-memory log, as if the app had just started. */
+    static void reset() throws Throwable {
+        Handles.CLOSE_LOG.invoke();
+        Handles.CLEAR.invoke(Handles.log());
+    }
+
+    /** Loads the log the way startup does. */
+    static void load() throws Throwable {
+        Handles.LOAD_LOG.invoke();
+    }
+
+    /** Number of entries in the in-memory log. */
+    static int size() throws Throwable {
+        return (int) Handles.SIZE.invoke(Handles.log());
+    }
+
+    Path snapshot() { return Path.of(logFile + ".snap"); }
+
+    /** Closes the journal and deletes the directory. */
+    void delete() throws Throwable {
+        Handles.CLOSE_LOG.invoke();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) Files.delete(file);
+        }
+    }
+
+    /** Handles are resolved on first use, after create() has set the log location. */
+    private static final class Handles {
+        static final Class<?> STORE = App.type("LogStore");
+        static final MethodHandle LOAD_LOG = App.staticMethod("loadLog", void.class);
+        static final MethodHandle CLOSE_LOG = App.staticMethod("closeLog", void.class);
+        static final MethodHandle CLEAR = App.method(STORE, "clear", void.class);
+        static final MethodHandle SIZE = App.method(STORE, "size", int.class);
+
+        static Object log() {
+            return App.staticField("log", STORE).get();
+        }
+    }
+}
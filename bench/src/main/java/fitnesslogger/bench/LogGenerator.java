@@ -0,0 +1,72 @@
+package fitnesslogger.bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic log.txt generator: the same entry count, seed and reference date always give the
+ * same entries. Dates run in order from the first day of the month before the reference date up to it; with
+ * today as the reference the whole log stays in the hot window and loads from log.txt instead of being
+ * archived into month segments.
+ */
+public final class LogGenerator {
+    static final long SEED = 42;
+    static final String[] NAMES = {
+            "Push-ups", "push-ups", "Squats", "Pull-ups", "Bench press", "Deadlift", "Lunges",
+            "Plank", "Burpees", "Jumping jacks", "Running", "Swimming", "Cycling", "Rowing"
+    };
+
+    private LogGenerator() {}
+
+    /**
+     * Writes a log of the given size, dated up to today, in the CSV format of log.txt.
+     * @param file File to (over)write
+     * @param entries Number of entries
+     */
+    public static void write(Path file, int entries) throws IOException {
+        write(file, entries, LocalDate.now());
+    }
+
+    /**
+     * Writes a log of the given size in the CSV format of log.txt.
+     * @param file File to (over)write
+     * @param entries Number of entries
+     * @param today Reference date of the last entry
+     */
+    public static void write(Path file, int entries, LocalDate today) throws IOException {
+        SplittableRandom random = new SplittableRandom(SEED);
+        LocalDate first = today.withDayOfMonth(1).minusMonths(1);
+        long startDay = first.toEpochDay(), days = today.toEpochDay() - startDay + 1;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder(64);
+            for (int i = 0; i < entries; i++) {
+                line.setLength(0);
+                String name = NAMES[random.nextInt(NAMES.length)];
+                switch (random.nextInt(3)) {
+                    case 0 -> line.append("strength;").append(name).append(';')
+                            .append(1 + random.nextInt(6)).append(';').append(1 + random.nextInt(30));
+                    case 1 -> line.append("cardio;").append(name).append(';')
+                            .append(15 + random.nextInt(600)).append(';').append(1 + random.nextInt(6));
+                    default -> line.append("endurance;").append(name).append(';')
+                            .append(200 + random.nextInt(20_000)).append(';').append(60 + random.nextInt(7200));
+                }
+                line.append(';').append(LocalDate.ofEpochDay(startDay + i * days / entries)).append('\n');
+                writer.append(line);
+            }
+        }
+    }
+
+    /** Usage: LogGenerator &lt;entries&gt; &lt;file&gt; [yyyy-MM-dd reference date, default today] */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.out.println("Usage: LogGenerator <entries> <file> [yyyy-MM-dd]");
+            return;
+        }
+        write(Path.of(args[1]), Integer.parseInt(args[0]), args.length == 3 ? LocalDate.parse(args[2]) : LocalDate.now());
+    }
+}
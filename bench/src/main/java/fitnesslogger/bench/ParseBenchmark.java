@@ -0,0 +1,62 @@
+package fitnesslogger.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.time.LocalDate;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the input parsers used by the menus and headless import, over a fixed mix of valid inputs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParseBenchmark {
+    private static final int INPUTS = 1024; // Power of two, cycled through with a mask
+    private static final MethodHandle PARSE_DURATION = App.staticMethod("parseDuration", Integer.class, String.class);
+    private static final MethodHandle PARSE_DISTANCE = App.staticMethod("parseDistance", Integer.class, String.class);
+    private static final MethodHandle PARSE_DATE = App.staticMethod("parseDate", LocalDate.class, String.class);
+
+    private final String[] durations = new String[INPUTS], distances = new String[INPUTS], dates = new String[INPUTS];
+    private int next;
+
+    @Setup
+    public void inputs() {
+        SplittableRandom random = new SplittableRandom(LogGenerator.SEED);
+        for (int i = 0; i < INPUTS; i++) {
+            int h = random.nextInt(3), m = random.nextInt(60), s = random.nextInt(60);
+            durations[i] = switch (i % 4) {
+                case 0 -> h + "h" + m + "m" + s + "s";
+                case 1 -> m + "m";
+                case 2 -> s + "s";
+                default -> m + "m" + s + "s";
+            };
+            distances[i] = switch (i % 3) {
+                case 0 -> (100 + random.nextInt(10_000)) + "m";
+                case 1 -> (1 + random.nextInt(42)) + "km";
+                default -> String.valueOf(100 + random.nextInt(10_000));
+            };
+            dates[i] = String.format("%02d/%02d/%04d", 1 + random.nextInt(28), 1 + random.nextInt(12), 2000 + random.nextInt(30));
+        }
+    }
+
+    @Benchmark
+    public Integer parseDuration() throws Throwable {
+        return (Integer) PARSE_DURATION.invokeExact(durations[next++ & (INPUTS - 1)]);
+    }
+
+    @Benchmark
+    public Integer parseDistance() throws Throwable {
+        return (Integer) PARSE_DISTANCE.invokeExact(distances[next++ & (INPUTS - 1)]);
+    }
+
+    @Benchmark
+    public LocalDate parseDate() throws Throwable {
+        return (LocalDate) PARSE_DATE.invokeExact(dates[next++ & (INPUTS - 1)]);
+    }
+}
@@ -0,0 +1,64 @@
+package fitnesslogger.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Progress aggregation over a loaded log: the Show Progress screen (output discarded), and rebuilding the
+ * per-exercise progress summaries from every row, which is what the screen would cost without its index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ProgressBenchmark {
+    @Param({"10000", "1000000"})
+    int entries;
+
+    private LogFixture fixture;
+    private PrintStream console;
+    private MethodHandle showProgress, newProgress, addRow;
+    private Object log;
+    private int size;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        fixture = LogFixture.create(entries);
+        LogFixture.load();
+        Class<?> store = App.type("LogStore"), progress = App.type("ProgressIndex");
+        log = App.staticField("log", store).get();
+        size = LogFixture.size();
+        showProgress = App.staticMethod("showProgress", String.class, Scanner.class);
+        newProgress = App.constructor(progress).asType(MethodType.methodType(Object.class));
+        addRow = App.method(progress, "add", void.class, store, int.class)
+                .asType(MethodType.methodType(void.class, Object.class, Object.class, int.class));
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public String showProgress() throws Throwable {
+        return (String) showProgress.invokeExact(new Scanner("back\n"));
+    }
+
+    @Benchmark
+    public Object rebuildProgress() throws Throwable {
+        Object progress = newProgress.invokeExact();
+        for (int row = 0; row < size; row++) addRow.invokeExact(progress, log, row);
+        return progress;
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Throwable {
+        System.setOut(console);
+        fixture.delete();
+    }
+}
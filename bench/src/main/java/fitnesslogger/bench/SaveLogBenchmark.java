@@ -0,0 +1,40 @@
+package fitnesslogger.bench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.invoke.MethodHandle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full rewrite of log.txt from memory with saveLog() (write, fsync and rename), as clearing or editing history does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SaveLogBenchmark {
+    @Param({"10000", "1000000", "10000000"})
+    int entries;
+
+    private LogFixture fixture;
+    private MethodHandle saveLog;
+
+    @Setup(Level.Trial)
+    public void load() throws Throwable {
+        fixture = LogFixture.create(entries);
+        LogFixture.load();
+        saveLog = App.staticMethod("saveLog", void.class);
+    }
+
+    @Benchmark
+    public void saveLog() throws Throwable {
+        saveLog.invokeExact();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws Throwable {
+        fixture.delete();
+    }
+}
@@ -0,0 +1,359 @@
+package fitnesslogger.bench;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.invoke.MethodHandle;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Load test for the interactive flows: replays keystroke scripts through FitnessLogger.main (stdin swapped for
+ * the script, output discarded) against generated logs of several sizes, and reports per-command latency
+ * percentiles, throughput and how each command's latency grows with the log.
+ * <p>
+ * A script holds one typed line per line, exactly as entered in the app. A line "#label" starts a command: the
+ * lines after it up to the next label are timed together, from handing over the first line until the app asks
+ * for the line after the last one. Unlabeled lines are timed one by one under "&gt; line". "startup" (loadLog and
+ * the first menu) is always reported, and an "exit" is appended if the script does not end with one. Without
+ * --script a deterministic mix of adds, log browsing, progress, analytics and totals sessions is generated;
+ * --write-script saves it as a starting point for custom scripts.
+ * <p>
+ * Each log size runs in its own JVM, since the log location is fixed when the logger class loads. The slope of
+ * log(p50) over log(size) shows how a command scales (about 0 when constant, 1 when linear); commands not listed
+ * in --linear that exceed --max-slope are flagged and make the exit status 1.
+ */
+public final class SessionReplay {
+    static final String USAGE = "Usage: SessionReplay [--sizes 1000,10000,...] [--script file | --sessions n] [--warmup n]"
+            + " [--iterations n] [--heap 3g] [--max-slope 0.5] [--linear startup,analytics] [--write-script file]";
+    private static final String STARTUP = "startup";
+    private static final DateTimeFormatter INPUT_DATE = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
+    private SessionReplay() {}
+
+    /** A labeled group of typed lines, timed as one. */
+    record Command(String label, List<String> inputs) {}
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length == 5 && args[0].equals("--child")) {
+            replay(Integer.parseInt(args[1]), parse(Files.readAllLines(Path.of(args[2]))),
+                    Integer.parseInt(args[3]), Integer.parseInt(args[4]));
+            return;
+        }
+        Map<String, String> options = new LinkedHashMap<>(Map.of("--sizes", "1000,10000,100000,1000000,10000000",
+                "--sessions", "10", "--warmup", "2", "--iterations", "5", "--heap", "3g", "--max-slope", "0.5",
+                "--linear", STARTUP + ",analytics"));
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length || !args[i].startsWith("--")) {
+                System.out.println(USAGE);
+                return;
+            }
+            options.put(args[i], args[i + 1]);
+        }
+        List<String> script = options.containsKey("--script") ? Files.readAllLines(Path.of(options.get("--script")))
+                : generate(Integer.parseInt(options.get("--sessions")));
+        if (options.containsKey("--write-script")) {
+            Files.write(Path.of(options.get("--write-script")), script);
+            return;
+        }
+        Path scriptFile = Files.createTempFile("fitness-replay", ".txt");
+        Files.write(scriptFile, script);
+        int[] sizes = Arrays.stream(options.get("--sizes").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        // size -> label -> {count, p50, p90, p99, max} in nanoseconds; and size -> {commands, nanoseconds}
+        Map<Integer, Map<String, long[]>> results = new LinkedHashMap<>();
+        Map<Integer, long[]> throughput = new LinkedHashMap<>();
+        boolean failed = false;
+        try {
+            for (int size : sizes) {
+                System.out.println("Replaying against " + size + " entries...");
+                Map<String, long[]> commands = new LinkedHashMap<>();
+                long[] session = runChild(size, scriptFile, options, commands);
+                if (session == null) {
+                    failed = true;
+                    break;
+                }
+                results.put(size, commands);
+                throughput.put(size, session);
+            }
+        } finally {
+            Files.deleteIfExists(scriptFile);
+        }
+        if (failed) System.exit(1);
+        int commands = parse(script).size();
+        boolean regressed = report(results, throughput, commands, Double.parseDouble(options.get("--max-slope")),
+                List.of(options.get("--linear").split(",")));
+        if (regressed) System.exit(1);
+    }
+
+    /**
+     * Runs one size in a fresh JVM with the same classpath.
+     * @param commands Filled with the child's per-command results
+     * @return {commands, nanoseconds} replayed after startup, or null if the child failed
+     */
+    private static long[] runChild(int size, Path script, Map<String, String> options, Map<String, long[]> commands)
+            throws IOException, InterruptedException {
+        Process child = new ProcessBuilder(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Xmx" + options.get("--heap"), "-cp", System.getProperty("java.class.path"), SessionReplay.class.getName(),
+                "--child", String.valueOf(size), script.toString(), options.get("--warmup"), options.get("--iterations"))
+                .redirectError(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        long[] session = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(child.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if (fields[0].equals("result")) {
+                    commands.put(fields[1], Arrays.stream(fields, 2, 7).mapToLong(Long::parseLong).toArray());
+                } else if (fields[0].equals("session")) {
+                    session = new long[] {Long.parseLong(fields[1]), Long.parseLong(fields[2])};
+                } else {
+                    System.out.println(line);
+                }
+            }
+        }
+        if (child.waitFor() != 0 || session == null) {
+            System.out.println("Replay against " + size + " entries failed (exit status " + child.exitValue() + ")");
+            return null;
+        }
+        return session;
+    }
+
+    /**
+     * Child side: generates the log, replays the script warmup + iterations times and prints tab-separated results.
+     */
+    private static void replay(int size, List<Command> script, int warmup, int iterations) throws Throwable {
+        LogFixture fixture = LogFixture.create(size);
+        MethodHandle main = App.staticMethod("main", void.class, String[].class);
+        PrintStream console = System.out;
+        InputStream stdin = System.in;
+        Map<String, Samples> samples = new LinkedHashMap<>();
+        long sessionNanos = 0, sessionCommands = 0;
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8));
+            for (int i = 0; i < warmup + iterations; i++) {
+                LogFixture.reset();
+                ReplayInput input = new ReplayInput(script);
+                System.setIn(input);
+                main.invoke(new String[0]);
+                input.finish();
+                if (i < warmup) continue;
+                for (int c = 0; c < input.labels.size(); c++) {
+                    samples.computeIfAbsent(input.labels.get(c), l -> new Samples()).add(input.nanos[c]);
+                    if (c > 0) sessionNanos += input.nanos[c];
+                }
+                sessionCommands += input.labels.size() - 1;
+            }
+        } finally {
+            System.setOut(console);
+            System.setIn(stdin);
+            fixture.delete();
+        }
+        for (Map.Entry<String, Samples> entry : samples.entrySet()) {
+            Samples s = entry.getValue();
+            console.println("result\t" + entry.getKey() + "\t" + s.count + "\t" + s.percentile(0.50) + "\t" + s.percentile(0.90)
+                    + "\t" + s.percentile(0.99) + "\t" + s.percentile(1.0));
+        }
+        console.println("session\t" + sessionCommands + "\t" + sessionNanos);
+    }
+
+    /**
+     * Prints latency per size and command, then the p50 scaling table.
+     * @return Whether a command outside the linear list grew faster than maxSlope
+     */
+    private static boolean report(Map<Integer, Map<String, long[]>> results, Map<Integer, long[]> throughput, int commands,
+                                  double maxSlope, List<String> linear) {
+        System.out.println();
+        System.out.printf("%-10s %-20s %7s %10s %10s %10s %10s%n", "entries", "command", "count", "p50 ms", "p90 ms", "p99 ms", "max ms");
+        for (Map.Entry<Integer, Map<String, long[]>> size : results.entrySet()) {
+            for (Map.Entry<String, long[]> command : size.getValue().entrySet()) {
+                long[] r = command.getValue();
+                System.out.printf("%-10d %-20s %7d %10.3f %10.3f %10.3f %10.3f%n", size.getKey(), command.getKey(), r[0],
+                        r[1] / 1e6, r[2] / 1e6, r[3] / 1e6, r[4] / 1e6);
+            }
+            long[] session = throughput.get(size.getKey());
+            System.out.printf("%-10d %d commands per session, %.0f commands/s after startup%n%n", size.getKey(), commands,
+                    session[0] / (session[1] / 1e9));
+        }
+
+        List<Integer> sizes = new ArrayList<>(results.keySet());
+        Map<String, long[]> first = results.get(sizes.get(0));
+        StringBuilder header = new StringBuilder(String.format("%-20s", "p50 ms"));
+        for (int size : sizes) header.append(String.format(" %10d", size));
+        System.out.println(header.append("      slope"));
+        boolean regressed = false;
+        for (String label : first.keySet()) {
+            StringBuilder row = new StringBuilder(String.format("%-20s", label));
+            double sx = 0, sy = 0, sxx = 0, sxy = 0;
+            int n = 0;
+            for (int size : sizes) {
+                long[] r = results.get(size).get(label);
+                row.append(r == null ? String.format(" %10s", "-") : String.format(" %10.3f", r[1] / 1e6));
+                if (r == null) continue;
+                double x = Math.log(size), y = Math.log(Math.max(r[1], 1));
+                sx += x;
+                sy += y;
+                sxx += x * x;
+                sxy += x * y;
+                n++;
+            }
+            if (n >= 2 && n * sxx - sx * sx > 0) {
+                double slope = (n * sxy - sx * sy) / (n * sxx - sx * sx);
+                boolean flagged = slope > maxSlope && !linear.contains(label);
+                regressed |= flagged;
+                row.append(String.format(" %10.2f", slope)).append(flagged ? "  <- grows with the log" : "");
+            }
+            System.out.println(row);
+        }
+        return regressed;
+    }
+
+    /** Splits script lines into commands; see the class comment for the format. */
+    static List<Command> parse(List<String> lines) {
+        List<Command> commands = new ArrayList<>();
+        Command labeled = null;
+        for (String line : lines) {
+            if (line.startsWith("#")) {
+                labeled = new Command(line.substring(1).trim(), new ArrayList<>());
+                commands.add(labeled);
+            } else if (labeled != null) {
+                labeled.inputs().add(line);
+            } else {
+                commands.add(new Command("> " + line.trim(), List.of(line)));
+            }
+        }
+        commands.removeIf(command -> command.inputs().isEmpty());
+        if (commands.isEmpty() || !last(commands).trim().equalsIgnoreCase("exit")) commands.add(new Command("exit", List.of("exit")));
+        return commands;
+    }
+
+    private static String last(List<Command> commands) {
+        List<String> inputs = commands.get(commands.size() - 1).inputs();
+        return inputs.get(inputs.size() - 1);
+    }
+
+    /**
+     * Generates a deterministic script of the given number of sessions, each adding one entry of every type,
+     * paging, jumping and filtering through the log, then opening progress, analytics and totals.
+     */
+    static List<String> generate(int sessions) {
+        SplittableRandom random = new SplittableRandom(LogGenerator.SEED);
+        LocalDate today = LocalDate.now();
+        List<String> script = new ArrayList<>();
+        for (int i = 0; i < sessions; i++) {
+            String name = LogGenerator.NAMES[random.nextInt(LogGenerator.NAMES.length)];
+            String day = INPUT_DATE.format(today.minusDays(random.nextInt(30)));
+            add(script, "add strength", "1", "1", name, String.valueOf(1 + random.nextInt(6)), String.valueOf(1 + random.nextInt(30)), "");
+            add(script, "add cardio", "1", "2", name, (1 + random.nextInt(10)) + "m" + random.nextInt(60) + "s", String.valueOf(1 + random.nextInt(6)), "");
+            add(script, "add endurance", "1", "3", name, (1 + random.nextInt(20)) + "km", (5 + random.nextInt(120)) + "m", "");
+            add(script, "view log", "2");
+            add(script, "previous page", "p");
+            add(script, "previous page", "p");
+            add(script, "next page", "n");
+            add(script, "jump to date", "date", day);
+            add(script, "filter", "filter", day, "", name);
+            add(script, "show all", "all");
+            add(script, "back", "back");
+            add(script, "progress", "3", "back");
+            add(script, "analytics", "4", "back");
+            add(script, "totals", "5", "");
+            add(script, "totals by month", "month");
+            add(script, "back", "back");
+        }
+        script.add("#exit");
+        script.add("exit");
+        return script;
+    }
+
+    private static void add(List<String> script, String label, String... inputs) {
+        script.add("#" + label);
+        script.addAll(List.of(inputs));
+    }
+
+    /**
+     * Stdin for one replay. Hands out one script line per read, so the time between handing out a line and the
+     * next read is the app's response to it; a command's latency is the sum over its lines.
+     */
+    private static final class ReplayInput extends InputStream {
+        private final List<Command> script;
+        final List<String> labels = new ArrayList<>();
+        long[] nanos;
+        private int command, line; // Next line to hand out
+        private byte[] pending = new byte[0];
+        private int pendingAt;
+        private long mark = System.nanoTime(); // When the current line was handed out (or the replay started)
+
+        ReplayInput(List<Command> script) {
+            this.script = script;
+            labels.add(STARTUP);
+            nanos = new long[script.size() + 1];
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (length == 0) return 0;
+            if (pendingAt == pending.length) {
+                nanos[labels.size() - 1] += System.nanoTime() - mark;
+                if (command == script.size()) return -1;
+                Command next = script.get(command);
+                if (line == 0) labels.add(next.label());
+                pending = (next.inputs().get(line) + "\n").getBytes(StandardCharsets.UTF_8);
+                pendingAt = 0;
+                if (++line == next.inputs().size()) {
+                    command++;
+                    line = 0;
+                }
+                mark = System.nanoTime();
+            }
+            int count = Math.min(length, pending.length - pendingAt);
+            System.arraycopy(pending, pendingAt, buffer, offset, count);
+            pendingAt += count;
+            return count;
+        }
+
+        @Override
+        public int read() {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int available() { return pending.length - pendingAt; }
+
+        /** Times the response to the last line once main has returned. */
+        void finish() {
+            if (command < script.size()) {
+                throw new IllegalStateException("the app exited before the end of the script");
+            }
+            nanos[labels.size() - 1] += System.nanoTime() - mark;
+        }
+    }
+
+    /** Latency samples of one command, in nanoseconds. */
+    private static final class Samples {
+        long[] values = new long[64];
+        int count;
+
+        void add(long nanos) {
+            if (count == values.length) values = Arrays.copyOf(values, count * 2);
+            values[count++] = nanos;
+        }
+
+        /** Nearest-rank percentile; sorts the samples in place. */
+        long percentile(double percentile) {
+            Arrays.sort(values, 0, count);
+            return values[Math.max(0, (int) Math.ceil(percentile * count) - 1)];
+        }
+    }
+}